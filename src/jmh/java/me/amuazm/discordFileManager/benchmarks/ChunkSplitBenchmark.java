@@ -0,0 +1,52 @@
+package me.amuazm.discordFileManager.benchmarks;
+
+import me.amuazm.discordFileManager.utils.Utils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// Splitting list/search replies into Discord-sized chunks, old splitter against the single-pass one
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class ChunkSplitBenchmark {
+    // Number of lines in the reply, from a short listing to a very large search result
+    @Param({"50", "1000", "20000"})
+    private int lines;
+
+    private String text;
+    private StringBuilder builder;
+
+    @Setup
+    public void setup() {
+        builder = new StringBuilder("<@123456789012345678> 🔍 Found ").append(lines).append(" file(s):\n");
+        for (int i = 0; i < lines; i++) {
+            if (i % 10 == 0) {
+                builder.append("📁 `schematics/builds/district_").append(i / 10).append("/`\n");
+            } else {
+                builder.append("📄 `schematics/builds/district_").append(i / 10).append("/medieval_castle_v").append(i).append(".schem`\n");
+            }
+        }
+        text = builder.toString();
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        blackhole.consume(LegacyChunkSplitter.splitIntoChunks(text, 1900));
+    }
+
+    @Benchmark
+    public void singlePass(Blackhole blackhole) {
+        blackhole.consume(Utils.splitIntoChunks(text, 1900));
+    }
+
+    // What the handlers do: stream chunks straight from the StringBuilder without building the whole String first
+    @Benchmark
+    public void singlePassStreamed(Blackhole blackhole) {
+        Utils.forEachChunk(builder, 1900, blackhole::consume);
+    }
+}
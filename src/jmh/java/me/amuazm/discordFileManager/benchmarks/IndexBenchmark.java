@@ -0,0 +1,67 @@
+package me.amuazm.discordFileManager.benchmarks;
+
+import me.amuazm.discordFileManager.discord.PagedListing;
+import me.amuazm.discordFileManager.index.DirectoryIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// What -search and -list do once the command is parsed: query the in-memory index, then sort and render a page
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class IndexBenchmark extends TreeState {
+    private static final String TITLE = "<@123456789012345678>\n### 📖 Schematics Files in `schematics`:\n";
+
+    private DirectoryIndex index;
+    private String listedDirectory;
+
+    @Setup(Level.Trial)
+    public void buildIndex() {
+        index = new DirectoryIndex(tree.root(), true, Logger.getLogger("benchmark"), "benchmark");
+        index.rebuild();
+
+        // The root for flat trees, a leaf directory for deep ones
+        String firstPath = tree.relativePaths().getFirst();
+        int separator = firstPath.lastIndexOf('/');
+        listedDirectory = separator < 0 ? "" : firstPath.substring(0, separator);
+    }
+
+    @Benchmark
+    public void searchSubstring(Blackhole blackhole) {
+        blackhole.consume(index.search(List.of("castle"), 201));
+    }
+
+    @Benchmark
+    public void searchMultiTerm(Blackhole blackhole) {
+        blackhole.consume(index.search(List.of("tower", "v99"), 201));
+    }
+
+    // No exact hits, so this takes the typo-tolerant path
+    @Benchmark
+    public void searchTypo(Blackhole blackhole) {
+        blackhole.consume(index.search(List.of("medival_castle"), 201));
+    }
+
+    @Benchmark
+    public void searchMiss(Blackhole blackhole) {
+        blackhole.consume(index.search(List.of("zzz_missing"), 201));
+    }
+
+    @Benchmark
+    public void listAndRender(Blackhole blackhole) {
+        PagedListing listing = PagedListing.ofDirectory(TITLE, index.list(listedDirectory), true, PagedListing.SortOrder.NAME);
+        blackhole.consume(listing.render(0));
+    }
+
+    @Benchmark
+    public void listBySizeAndRender(Blackhole blackhole) {
+        PagedListing listing = PagedListing.ofDirectory(TITLE, index.list(listedDirectory), true, PagedListing.SortOrder.SIZE);
+        blackhole.consume(listing.render(0));
+    }
+}
@@ -0,0 +1,28 @@
+package me.amuazm.discordFileManager.benchmarks;
+
+import me.amuazm.discordFileManager.index.DirectoryIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// Full walk of the tree, as done on startup, reload and when polling replaces the watcher
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class IndexScanBenchmark extends TreeState {
+    private DirectoryIndex index;
+
+    @Setup(Level.Trial)
+    public void createIndex() {
+        index = new DirectoryIndex(tree.root(), true, Logger.getLogger("benchmark"), "benchmark");
+    }
+
+    @Benchmark
+    public int rebuild() {
+        index.rebuild();
+        return index.countFiles();
+    }
+}
@@ -0,0 +1,58 @@
+package me.amuazm.discordFileManager.benchmarks;
+
+import me.amuazm.discordFileManager.index.PathSandbox;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Turning a user-supplied relative path into a file inside the managed root, once per path in a spread-out sample
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolveBenchmark extends TreeState {
+    private static final int SAMPLE_SIZE = 1000;
+
+    private File rootDir;
+    private PathSandbox sandbox;
+    private List<String> sample;
+
+    @Setup(Level.Trial)
+    public void pickSample() throws IOException {
+        rootDir = tree.root().toFile();
+        sandbox = new PathSandbox(tree.root());
+        sample = tree.sample(SAMPLE_SIZE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_SIZE)
+    public void sandbox(Blackhole blackhole) throws IOException {
+        for (String relativePath : sample) {
+            blackhole.consume(sandbox.resolve(relativePath));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_SIZE)
+    public void canonicalPath(Blackhole blackhole) throws IOException {
+        for (String relativePath : sample) {
+            blackhole.consume(resolveCanonical(relativePath));
+        }
+    }
+
+    // What FileManager.resolveFile did before PathSandbox: two getCanonicalPath calls per lookup, with attributes
+    // still to be read by the caller
+    private File resolveCanonical(String relativePath) throws IOException {
+        File targetFile = new File(rootDir, Paths.get(relativePath).normalize().toString());
+        if (!targetFile.getCanonicalPath().startsWith(rootDir.getCanonicalPath())) {
+            return null;
+        }
+        return targetFile;
+    }
+}
@@ -0,0 +1,97 @@
+package me.amuazm.discordFileManager.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// A reproducible managed directory in a temp dir: schematic/quest-like names with small text contents, either all
+// in the root (flat) or 50 per directory three levels down (deep)
+final class SyntheticTree {
+    private static final String[] NAMES = {"medieval_castle", "watch_tower", "stone_bridge", "npc_guard", "quest_chain",
+            "market_stall", "harbor_dock", "temple_ruins", "village_well", "dragon_lair"};
+    private static final String[] EXTENSIONS = {".schem", ".yml", ".json"};
+    private static final int FILES_PER_DIRECTORY = 50;
+
+    private final Path root;
+    private final List<String> relativePaths;
+
+    private SyntheticTree(Path root, List<String> relativePaths) {
+        this.root = root;
+        this.relativePaths = relativePaths;
+    }
+
+    static SyntheticTree create(int fileCount, String layout) throws IOException {
+        boolean deep = switch (layout) {
+            case "flat" -> false;
+            case "deep" -> true;
+            default -> throw new IllegalArgumentException("Unknown layout: " + layout);
+        };
+
+        Path root = Files.createTempDirectory("dfm-bench-");
+        List<String> relativePaths = new ArrayList<>(fileCount);
+        Random random = new Random(fileCount);
+        StringBuilder content = new StringBuilder();
+
+        for (int i = 0; i < fileCount; i++) {
+            String name = NAMES[i % NAMES.length] + "_v" + i + EXTENSIONS[i % EXTENSIONS.length];
+            String relativePath = deep ? directoryFor(i / FILES_PER_DIRECTORY) + "/" + name : name;
+
+            // A few hundred bytes to a couple of KB of YAML-ish text, so zipping has something to compress
+            content.setLength(0);
+            int lines = 8 + random.nextInt(60);
+            for (int line = 0; line < lines; line++) {
+                content.append("key_").append(line).append(": ").append(NAMES[random.nextInt(NAMES.length)])
+                        .append(' ').append(random.nextInt(100_000)).append('\n');
+            }
+
+            Path file = root.resolve(relativePath);
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, content, StandardCharsets.UTF_8);
+            relativePaths.add(relativePath);
+        }
+
+        return new SyntheticTree(root, relativePaths);
+    }
+
+    private static String directoryFor(int directory) {
+        return "region_" + directory % 10 + "/town_" + directory / 10 % 10 + "/build_" + directory / 100;
+    }
+
+    Path root() {
+        return root;
+    }
+
+    List<String> relativePaths() {
+        return relativePaths;
+    }
+
+    // Every n-th path, so samples cover the whole tree
+    List<String> sample(int count) {
+        List<String> sample = new ArrayList<>(count);
+        int step = Math.max(1, relativePaths.size() / count);
+        for (int i = 0; i < relativePaths.size() && sample.size() < count; i += step) {
+            sample.add(relativePaths.get(i));
+        }
+        return sample;
+    }
+
+    void delete() throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
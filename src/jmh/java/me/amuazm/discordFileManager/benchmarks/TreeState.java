@@ -0,0 +1,27 @@
+package me.amuazm.discordFileManager.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+
+// Generates the synthetic tree once per fork for every files/layout combination
+@State(Scope.Benchmark)
+public abstract class TreeState {
+    @Param({"1000", "10000", "100000"})
+    protected int files;
+
+    @Param({"flat", "deep"})
+    protected String layout;
+
+    protected SyntheticTree tree;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        tree = SyntheticTree.create(files, layout);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        tree.delete();
+    }
+}
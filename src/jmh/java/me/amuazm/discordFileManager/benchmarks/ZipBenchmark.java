@@ -0,0 +1,62 @@
+package me.amuazm.discordFileManager.benchmarks;
+
+import me.amuazm.discordFileManager.archive.ArchiveBuilder;
+import me.amuazm.discordFileManager.archive.ArchiveSource;
+import me.amuazm.discordFileManager.archive.CompressionSettings;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Zipping search results for the "Download as ZIP" button, single-threaded and with a few zip threads
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZipBenchmark {
+    private static final long PART_LIMIT = 10L * 1024 * 1024;
+
+    // Search results are capped, so archives hold tens to hundreds of files rather than whole trees
+    @Param({"50", "500"})
+    private int entries;
+
+    @Param({"1", "4"})
+    private int zipThreads;
+
+    private SyntheticTree tree;
+    private ExecutorService executor;
+    private List<ArchiveSource> sources;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        tree = SyntheticTree.create(entries, "deep");
+        executor = Executors.newFixedThreadPool(zipThreads);
+
+        sources = new ArrayList<>(entries);
+        for (String relativePath : tree.relativePaths()) {
+            Path file = tree.root().resolve(relativePath);
+            sources.add(new ArchiveSource(relativePath, file.toFile(), Files.size(file)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        tree.delete();
+    }
+
+    @Benchmark
+    public int buildArchive() throws IOException {
+        ArchiveBuilder.Result result = new ArchiveBuilder(executor, zipThreads, CompressionSettings.DEFAULT, PART_LIMIT).build(sources, "benchmark");
+        result.deleteParts();
+        return result.parts().size();
+    }
+}
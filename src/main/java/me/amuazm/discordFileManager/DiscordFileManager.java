@@ -2,23 +2,54 @@ package me.amuazm.discordFileManager;
 
 import lombok.Getter;
 import me.amuazm.discordFileManager.commands.DfmReloadCommand;
+import me.amuazm.discordFileManager.discord.CommandExecutionService;
+import me.amuazm.discordFileManager.discord.CommandRouter;
 import me.amuazm.discordFileManager.discord.FileManager;
-import me.amuazm.discordFileManager.discord.HelpCommandListener;
+import me.amuazm.discordFileManager.discord.HelpCommand;
+import me.amuazm.discordFileManager.discord.MessageOutbox;
+import me.amuazm.discordFileManager.index.HashCatalog;
+import me.amuazm.discordFileManager.metrics.Metrics;
+import me.amuazm.discordFileManager.metrics.MetricsReport;
+import me.amuazm.discordFileManager.metrics.MetricsServer;
+import me.amuazm.discordFileManager.trash.TrashStore;
 import me.amuazm.discordFileManager.utils.ConfigManager;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.requests.GatewayIntent;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Getter
 public final class DiscordFileManager extends JavaPlugin {
     private ConfigManager configManager;
     private JDA jda = null;
-    private List<FileManager> fileManagers = new ArrayList<>();
+    // Replaced as a whole on reload, so the metrics endpoint can read it from its own thread
+    private volatile List<FileManager> fileManagers = List.of();
+    // Bumped by every reload, so managers whose indexes finish after a newer reload are dropped instead of swapped in
+    private final AtomicInteger managerGeneration = new AtomicInteger();
+    private ThreadPoolExecutor zipExecutor = null;
+    private CommandExecutionService commandExecutionService = null;
+    private CommandRouter commandRouter = null;
+    private HelpCommand helpCommand = null;
+    private MessageOutbox messageOutbox = null;
+    private Metrics metrics = null;
+    private MetricsServer metricsServer = null;
+
+    // Trash stores and hash catalogs by their files, kept across reloads. The old managers may still be running
+    // commands while the new ones are built, and two instances over the same files would overwrite each other's logs
+    private final Map<Path, TrashStore> trashStores = new ConcurrentHashMap<>();
+    private final Map<Path, HashCatalog> hashCatalogs = new ConcurrentHashMap<>();
 
     @Override
     public void onEnable() {
@@ -35,12 +66,82 @@ public final class DiscordFileManager extends JavaPlugin {
             return;
         }
 
+        metrics = new Metrics();
+        initializeZipExecutor();
+        commandExecutionService = new CommandExecutionService(getLogger(), configManager.getCommandThreads(),
+                configManager.getCommandQueueLimit(), configManager.getCommandsPerUser());
+        commandRouter = new CommandRouter(configManager, metrics);
+        messageOutbox = new MessageOutbox(configManager, metrics);
+        helpCommand = new HelpCommand(configManager, messageOutbox);
         initializeFileManagers();
         initializeDiscordBot();
+        startMetricsServer();
+    }
+
+    private void initializeZipExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "DiscordFileManager-Zip-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        zipExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(configManager.getZipThreads(), threadFactory);
+    }
+
+    // Both executors are resized rather than replaced: archives and commands already running hold on to them
+    private void resizeExecutors() {
+        int zipThreads = configManager.getZipThreads();
+        if (zipThreads > zipExecutor.getMaximumPoolSize()) {
+            zipExecutor.setMaximumPoolSize(zipThreads);
+            zipExecutor.setCorePoolSize(zipThreads);
+        } else if (zipThreads < zipExecutor.getMaximumPoolSize()) {
+            zipExecutor.setCorePoolSize(zipThreads);
+            zipExecutor.setMaximumPoolSize(zipThreads);
+        }
+
+        commandExecutionService.resize(configManager.getCommandThreads(), configManager.getCommandQueueLimit(), configManager.getCommandsPerUser());
     }
 
     private void initializeFileManagers() {
-        fileManagers.clear();
+        int generation = managerGeneration.incrementAndGet();
+        List<FileManager> newManagers = new ArrayList<>();
+
+        if (!createFileManagers(newManagers)) {
+            newManagers.forEach(FileManager::shutdown);
+            return;
+        }
+
+        // On startup there is nothing to fall back on, commands wait for the first scan inside the index instead
+        if (fileManagers.isEmpty()) {
+            swapFileManagers(generation, newManagers);
+            return;
+        }
+
+        // Indexes are built on their own threads; old managers keep serving commands until all the new ones are ready
+        CompletableFuture.allOf(newManagers.stream().map(fileManager -> fileManager.getIndex().getReady()).toArray(CompletableFuture[]::new))
+                .whenComplete((ignored, throwable) -> swapFileManagers(generation, newManagers));
+    }
+
+    private synchronized void swapFileManagers(int generation, List<FileManager> newManagers) {
+        // A later reload (or shutdown) replaced these before their indexes were done
+        if (generation != managerGeneration.get()) {
+            newManagers.forEach(FileManager::shutdown);
+            return;
+        }
+
+        List<FileManager> previousManagers = fileManagers;
+        fileManagers = List.copyOf(newManagers);
+        commandRouter.setRoutes(fileManagers, helpCommand);
+
+        for (FileManager fileManager : previousManagers) {
+            fileManager.shutdown();
+        }
+        getLogger().info("File managers ready: " + fileManagers.size());
+    }
+
+    // False if a manager could not be set up, in which case the plugin is being disabled
+    private boolean createFileManagers(List<FileManager> fileManagers) {
 
         Map<String, ConfigManager.FileManagerConfig> configuredManagers = configManager.getFileManagers();
 
@@ -53,33 +154,58 @@ public final class DiscordFileManager extends JavaPlugin {
                     config.getDirFromPluginFolder(),
                     config.getItemCategory(),
                     commandPrefix,
-                    config.isAllowNestedDirs()
+                    config.isAllowNestedDirs(),
+                    config.getCompression()
             );
 
             if (!fileManager.isDirValid()) {
                 getLogger().severe("Failed to initialize file manager for prefix '" + commandPrefix + "' with directory '" + config.getDirFromPluginFolder() + "'");
+                fileManager.shutdown();
                 getServer().getPluginManager().disablePlugin(this);
-                return;
+                return false;
             }
 
             fileManagers.add(fileManager);
             String nestedDirStatus = config.isAllowNestedDirs() ? " (nested dirs enabled)" : " (nested dirs disabled)";
             getLogger().info("Initialized file manager: " + commandPrefix + " -> " + config.getDirFromPluginFolder() + " (" + config.getItemCategory() + ")" + nestedDirStatus);
         }
+
+        return true;
+    }
+
+    public TrashStore openTrashStore(Path storeDir, long maxBytes, long maxAgeMillis) {
+        TrashStore trashStore = trashStores.computeIfAbsent(storeDir, dir -> {
+            TrashStore store = new TrashStore(dir, maxBytes, maxAgeMillis, getLogger());
+            store.load();
+            return store;
+        });
+        trashStore.setLimits(maxBytes, maxAgeMillis);
+        return trashStore;
+    }
+
+    // A catalog is only reused while it covers the same directory, its entries are relative to that root
+    public HashCatalog openHashCatalog(Path root, Path storeFile) {
+        Path normalizedRoot = root.toAbsolutePath().normalize();
+        return hashCatalogs.compute(storeFile, (file, existing) -> {
+            if (existing != null && existing.getRoot().equals(normalizedRoot)) {
+                return existing;
+            }
+
+            if (existing != null) {
+                existing.save();
+            }
+            HashCatalog catalog = new HashCatalog(normalizedRoot, file, getLogger());
+            catalog.load();
+            return catalog;
+        });
     }
 
     private void initializeDiscordBot() {
         try {
-            HelpCommandListener helpCommandListener = new HelpCommandListener(this);
-
+            // A single router handles every command, file managers are reached through its routing table
             JDABuilder builder = JDABuilder.createDefault(configManager.getBotToken())
                     .enableIntents(GatewayIntent.MESSAGE_CONTENT, GatewayIntent.GUILD_MESSAGES)
-                    .addEventListeners(helpCommandListener);
-
-            // Add all file managers as event listeners
-            for (FileManager fileManager : fileManagers) {
-                builder.addEventListeners(fileManager);
-            }
+                    .addEventListeners(commandRouter);
 
             jda = builder.build();
             jda.awaitReady();
@@ -95,36 +221,87 @@ public final class DiscordFileManager extends JavaPlugin {
     public void reloadFileManagers() {
         getLogger().info("Reloading file managers...");
 
-        // Remove old file managers from JDA
-        if (jda != null) {
-            for (FileManager fileManager : fileManagers) {
-                jda.removeEventListener(fileManager);
-            }
-        }
+        resizeExecutors();
 
-        // Reinitialize file managers
+        // Reinitialize file managers; the router's routing table is swapped once their indexes are built
         initializeFileManagers();
 
-        // Add new file managers to JDA
-        if (jda != null) {
-            for (FileManager fileManager : fileManagers) {
-                jda.addEventListener(fileManager);
-            }
+        getLogger().info("File managers reloaded, they take over once their indexes are built.");
+    }
+
+    private void startMetricsServer() {
+        int port = configManager.getMetricsPort();
+        if (port == 0) {
+            return;
+        }
+
+        try {
+            MetricsReport report = new MetricsReport(this);
+            metricsServer = new MetricsServer(port, report::renderPrometheus, getLogger());
+            metricsServer.start();
+            getLogger().info("Serving metrics on http://127.0.0.1:" + port + "/metrics");
+        } catch (IOException e) {
+            metricsServer = null;
+            getLogger().warning("Could not start the metrics endpoint on port " + port + ": " + e.getMessage());
         }
+    }
 
-        getLogger().info("File managers reloaded successfully!");
+    private void stopMetricsServer() {
+        if (metricsServer != null) {
+            metricsServer.stop();
+            metricsServer = null;
+        }
+    }
+
+    // Only restarts the endpoint if its port changed, so scrapers don't see gaps on every reload
+    public void reloadMetricsServer() {
+        int port = configManager.getMetricsPort();
+        if (metricsServer != null && metricsServer.getPort() == port) {
+            return;
+        }
+
+        stopMetricsServer();
+        startMetricsServer();
+    }
+
+    private synchronized void shutdownFileManagers() {
+        // Managers still building their indexes are shut down as soon as they finish
+        managerGeneration.incrementAndGet();
+
+        for (FileManager fileManager : fileManagers) {
+            fileManager.shutdown();
+        }
     }
 
     @Override
     public void onDisable() {
+        stopMetricsServer();
+
+        // Cancel running commands before the file managers and executors they use go away
+        if (commandExecutionService != null) {
+            commandExecutionService.shutdown();
+            commandExecutionService = null;
+        }
+
+        shutdownFileManagers();
+
+        if (messageOutbox != null) {
+            MessageOutbox.Stats stats = messageOutbox.getStats();
+            getLogger().info("Sent " + stats.repliesSent() + " replies in " + stats.messagesSent() + " messages (" + stats.failures() + " failed, peak queue "
+                    + stats.peakQueued() + ", average latency " + Math.round(stats.averageLatencyMillis()) + " ms, max " + stats.maxLatencyMillis() + " ms)");
+        }
+
+        if (zipExecutor != null) {
+            zipExecutor.shutdownNow();
+            zipExecutor = null;
+        }
+
         if (jda != null) {
             try {
                 getLogger().info("Shutting down Discord bot...");
 
-                // Remove all event listeners first to prevent further events
-                for (FileManager fileManager : fileManagers) {
-                    jda.removeEventListener(fileManager);
-                }
+                // Remove the router first to prevent further events
+                jda.removeEventListener(commandRouter);
 
                 // Shutdown JDA and wait for it to complete
                 jda.shutdown();
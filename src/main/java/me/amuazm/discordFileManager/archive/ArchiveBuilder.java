@@ -0,0 +1,153 @@
+package me.amuazm.discordFileManager.archive;
+
+import me.amuazm.discordFileManager.utils.BufferPool;
+import me.amuazm.discordFileManager.utils.SizeLimitedOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+// Packs files into as few zip archives as possible, each no larger than the part limit
+public class ArchiveBuilder {
+    // Local header + central directory header per entry (names are counted separately), and the end record
+    private static final long ENTRY_OVERHEAD = 30 + 46;
+    private static final long ARCHIVE_OVERHEAD = 22;
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final CompressionSettings compression;
+    private final long partLimit;
+
+    public ArchiveBuilder(ExecutorService executor, int parallelism, CompressionSettings compression, long partLimit) {
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.compression = compression;
+        this.partLimit = partLimit;
+    }
+
+    public Result build(List<ArchiveSource> sources, String baseName) throws IOException {
+        Deque<Bin> bins = new ArrayDeque<>();
+        pack(sources).forEach(bin -> bins.add(new Bin(bin, false)));
+        List<File> files = new ArrayList<>();
+        List<Integer> entryCounts = new ArrayList<>();
+        List<ArchiveSource> skipped = new ArrayList<>();
+
+        try {
+            while (!bins.isEmpty()) {
+                Bin next = bins.poll();
+                List<ArchiveSource> bin = next.sources();
+                File file = File.createTempFile("dfm-" + baseName + "-", ".zip");
+
+                try (ParallelZipWriter zipWriter = new ParallelZipWriter(new SizeLimitedOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(file), BufferPool.BUFFER_SIZE), partLimit),
+                        executor, parallelism, compression, partLimit)) {
+                    for (ArchiveSource source : bin) {
+                        zipWriter.addFile(source.entryName(), source.file());
+                    }
+                    zipWriter.finish();
+                } catch (SizeLimitedOutputStream.SizeLimitExceededException e) {
+                    // Only a single file bigger than the limit, or a file that grew since it was indexed, ends up here
+                    file.delete();
+                    retry(next, bins, skipped);
+                    continue;
+                } catch (IOException e) {
+                    file.delete();
+                    throw e;
+                }
+
+                files.add(file);
+                entryCounts.add(bin.size());
+            }
+        } catch (IOException e) {
+            files.forEach(File::delete);
+            throw e;
+        }
+
+        List<ArchivePart> parts = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            String fileName = files.size() == 1 ? baseName + ".zip" : baseName + ".part" + (i + 1) + "of" + files.size() + ".zip";
+            parts.add(new ArchivePart(files.get(i), fileName, entryCounts.get(i)));
+        }
+
+        return new Result(parts, skipped);
+    }
+
+    // A lone file is over the limit by itself. Otherwise the bin is packed again with the files' current sizes, and
+    // if that doesn't fit either (a file still growing) its files are tried one by one, so only the offender is skipped
+    private void retry(Bin failed, Deque<Bin> bins, List<ArchiveSource> skipped) {
+        List<ArchiveSource> bin = failed.sources();
+        if (bin.size() == 1) {
+            skipped.add(bin.getFirst());
+        } else if (!failed.repacked()) {
+            List<ArchiveSource> current = new ArrayList<>(bin.size());
+            for (ArchiveSource source : bin) {
+                current.add(new ArchiveSource(source.entryName(), source.file(), source.file().length()));
+            }
+            pack(current).forEach(repacked -> bins.addFirst(new Bin(repacked, true)));
+        } else {
+            bin.forEach(source -> bins.addFirst(new Bin(List.of(source), true)));
+        }
+    }
+
+    // First-fit decreasing over a worst-case size estimate, so a part can never outgrow the limit once compressed
+    private List<List<ArchiveSource>> pack(List<ArchiveSource> sources) {
+        long capacity = partLimit - ARCHIVE_OVERHEAD;
+        List<ArchiveSource> sorted = new ArrayList<>(sources);
+        sorted.sort(Comparator.comparingLong(this::estimate).reversed());
+
+        List<List<ArchiveSource>> bins = new ArrayList<>();
+        List<Long> remaining = new ArrayList<>();
+
+        for (ArchiveSource source : sorted) {
+            long estimate = estimate(source);
+            int target = -1;
+
+            for (int i = 0; i < bins.size(); i++) {
+                if (remaining.get(i) >= estimate) {
+                    target = i;
+                    break;
+                }
+            }
+
+            if (target < 0) {
+                bins.add(new ArrayList<>());
+                remaining.add(capacity);
+                target = bins.size() - 1;
+            }
+
+            bins.get(target).add(source);
+            remaining.set(target, remaining.get(target) - estimate);
+        }
+
+        // Keep each archive's entries in path order
+        for (List<ArchiveSource> bin : bins) {
+            bin.sort(Comparator.comparing(ArchiveSource::entryName, String.CASE_INSENSITIVE_ORDER));
+        }
+
+        return bins;
+    }
+
+    private long estimate(ArchiveSource source) {
+        // Deflate can expand incompressible data slightly, so allow a small margin on top of the raw size
+        long nameBytes = source.entryName().getBytes(StandardCharsets.UTF_8).length;
+        return source.size() + source.size() / 1000 + 64 + ENTRY_OVERHEAD + 2 * nameBytes;
+    }
+
+    // Files packed into one archive; repacked once it has been packed again after not fitting
+    private record Bin(List<ArchiveSource> sources, boolean repacked) {
+    }
+
+    public record Result(List<ArchivePart> parts, List<ArchiveSource> skipped) {
+        public void deleteParts() {
+            parts.forEach(ArchivePart::delete);
+        }
+    }
+}
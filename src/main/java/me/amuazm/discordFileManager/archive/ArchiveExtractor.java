@@ -0,0 +1,123 @@
+package me.amuazm.discordFileManager.archive;
+
+import me.amuazm.discordFileManager.index.HashCatalog;
+import me.amuazm.discordFileManager.utils.BufferPool;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+// Streams the files out of a .zip or .tar.gz into a staging directory, hashing each one on the way. The total
+// size and file count are capped while reading, so an archive bomb is stopped long before it fills the disk.
+public class ArchiveExtractor {
+    private final long maxTotalBytes;
+    private final int maxEntries;
+
+    private long totalBytes = 0;
+
+    public ArchiveExtractor(long maxTotalBytes, int maxEntries) {
+        this.maxTotalBytes = maxTotalBytes;
+        this.maxEntries = maxEntries;
+    }
+
+    public static boolean isSupported(String fileName) {
+        String lowerName = fileName.toLowerCase(Locale.ROOT);
+        return lowerName.endsWith(".zip") || lowerName.endsWith(".tar.gz") || lowerName.endsWith(".tgz");
+    }
+
+    // Directories, links and other special entries are skipped; on any failure the staged files are deleted
+    public List<ExtractedEntry> extract(InputStream in, String fileName, Path stagingDir) throws IOException {
+        List<ExtractedEntry> entries = new ArrayList<>();
+
+        try {
+            if (fileName.toLowerCase(Locale.ROOT).endsWith(".zip")) {
+                extractZip(in, stagingDir, entries);
+            } else {
+                extractTar(in, stagingDir, entries);
+            }
+        } catch (IOException | RuntimeException e) {
+            entries.forEach(entry -> entry.file().delete());
+            throw e;
+        }
+
+        return entries;
+    }
+
+    private void extractZip(InputStream in, Path stagingDir, List<ExtractedEntry> entries) throws IOException {
+        ZipInputStream zipIn = new ZipInputStream(in);
+        ZipEntry zipEntry;
+
+        while ((zipEntry = zipIn.getNextEntry()) != null) {
+            if (!zipEntry.isDirectory()) {
+                entries.add(stage(zipEntry.getName(), zipIn, stagingDir, entries.size()));
+            }
+        }
+    }
+
+    private void extractTar(InputStream in, Path stagingDir, List<ExtractedEntry> entries) throws IOException {
+        TarReader tarReader = new TarReader(new BufferedInputStream(new GZIPInputStream(in, BufferPool.BUFFER_SIZE), BufferPool.BUFFER_SIZE), this::countBytes);
+        TarReader.Entry tarEntry;
+
+        while ((tarEntry = tarReader.next()) != null) {
+            if (tarEntry.file()) {
+                entries.add(stage(tarEntry.name(), tarReader.entryStream(), stagingDir, entries.size()));
+            }
+        }
+    }
+
+    private ExtractedEntry stage(String name, InputStream in, Path stagingDir, int count) throws IOException {
+        if (count >= maxEntries) {
+            throw new ExtractionLimitException("Archive has more than " + maxEntries + " files");
+        }
+
+        File file = Files.createTempFile(stagingDir, "entry-", ".tmp").toFile();
+        MessageDigest digest = HashCatalog.newDigest();
+        byte[] buffer = BufferPool.acquire();
+        long size = 0;
+
+        try (OutputStream out = new FileOutputStream(file)) {
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                size += length;
+
+                // Checked before writing, so at most one buffer past the limit is ever read
+                countBytes(length);
+
+                digest.update(buffer, 0, length);
+                out.write(buffer, 0, length);
+            }
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        } finally {
+            BufferPool.release(buffer);
+        }
+
+        // Archives made on Windows sometimes use backslashes
+        return new ExtractedEntry(name.replace('\\', '/'), file, size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private void countBytes(long length) throws ExtractionLimitException {
+        totalBytes += length;
+        if (totalBytes > maxTotalBytes) {
+            throw new ExtractionLimitException("Archive expands to more than " + maxTotalBytes / (1024 * 1024) + " MB");
+        }
+    }
+
+    public record ExtractedEntry(String name, File file, long size, String sha256) {
+    }
+
+    public static class ExtractionLimitException extends IOException {
+        public ExtractionLimitException(String message) {
+            super(message);
+        }
+    }
+}
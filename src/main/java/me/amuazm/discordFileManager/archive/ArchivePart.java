@@ -0,0 +1,12 @@
+package me.amuazm.discordFileManager.archive;
+
+import java.io.File;
+
+// One finished archive on disk, named for upload
+public record ArchivePart(File file, String fileName, int entryCount) {
+    public void delete() {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package me.amuazm.discordFileManager.archive;
+
+import java.io.File;
+
+// A file to be added to an archive, with its size as known from the index
+public record ArchiveSource(String entryName, File file, long size) {
+}
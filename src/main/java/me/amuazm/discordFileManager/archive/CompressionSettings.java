@@ -0,0 +1,18 @@
+package me.amuazm.discordFileManager.archive;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+// Per file manager compression policy: already-compressed formats are stored, everything else is deflated
+public record CompressionSettings(int level, Set<String> storedExtensions) {
+    public static final CompressionSettings DEFAULT = new CompressionSettings(Deflater.DEFAULT_COMPRESSION, Set.of());
+
+    public int levelFor(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot >= 0 && storedExtensions.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT))) {
+            return Deflater.NO_COMPRESSION;
+        }
+        return level;
+    }
+}
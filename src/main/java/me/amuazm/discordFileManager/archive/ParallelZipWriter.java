@@ -0,0 +1,377 @@
+package me.amuazm.discordFileManager.archive;
+
+import me.amuazm.discordFileManager.utils.BufferPool;
+import me.amuazm.discordFileManager.utils.SizeLimitedOutputStream;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// Writes a standard zip archive, compressing entries in parallel on the given executor while writing them
+// to the output in the order they were added. Compressed data is kept in memory up to SPILL_THRESHOLD per entry and
+// moved to a temp file beyond that, so a writer holds at most window × SPILL_THRESHOLD bytes of heap whatever the
+// part limit is. Callers should still cap the output (e.g. with SizeLimitedOutputStream); each entry is rejected
+// once it passes maxEntryBytes.
+public class ParallelZipWriter implements Closeable {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final long MAX_ZIP32_VALUE = 0xFFFFFFFFL;
+    private static final int MAX_ZIP32_ENTRIES = 0xFFFF;
+    private static final int SPILL_THRESHOLD = 1024 * 1024;
+
+    private final OutputStream out;
+    private final ExecutorService executor;
+    private final CompressionSettings compression;
+    private final long maxEntryBytes;
+    private final int window;
+    private final Deque<Future<CompressedEntry>> pending = new ArrayDeque<>();
+    private final List<CentralRecord> centralRecords = new ArrayList<>();
+
+    // Spill files not yet written and deleted, so close() can clean up after failed or cancelled entries
+    private final Set<File> spillFiles = ConcurrentHashMap.newKeySet();
+
+    private long offset = 0;
+    private boolean finished = false;
+    private volatile boolean closed = false;
+
+    public ParallelZipWriter(OutputStream out, ExecutorService executor, int parallelism, CompressionSettings compression, long maxEntryBytes) {
+        this.out = out;
+        this.executor = executor;
+        this.compression = compression;
+        this.maxEntryBytes = maxEntryBytes;
+        this.window = Math.max(1, parallelism) * 2;
+    }
+
+    public void addFile(String entryName, File file) throws IOException {
+        if (finished) {
+            throw new IOException("Zip archive already finished");
+        }
+
+        int level = compression.levelFor(file.getName());
+        pending.add(executor.submit(() -> compress(entryName, file, level)));
+
+        // Keep a bounded number of entries in flight, writing the oldest ones as soon as they're ready
+        while (pending.size() >= window) {
+            writeEntry(await(pending.poll()));
+        }
+    }
+
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+
+        while (!pending.isEmpty()) {
+            writeEntry(await(pending.poll()));
+        }
+
+        if (centralRecords.size() > MAX_ZIP32_ENTRIES) {
+            throw new IOException("Too many entries for a zip archive: " + centralRecords.size());
+        }
+
+        long centralStart = offset;
+        for (CentralRecord record : centralRecords) {
+            writeCentralHeader(record);
+        }
+        long centralSize = offset - centralStart;
+
+        if (centralStart > MAX_ZIP32_VALUE) {
+            throw new IOException("Zip archive is too large");
+        }
+
+        writeInt(END_SIGNATURE);
+        writeShort(0);
+        writeShort(0);
+        writeShort(centralRecords.size());
+        writeShort(centralRecords.size());
+        writeInt(centralSize);
+        writeInt(centralStart);
+        writeShort(0);
+        out.flush();
+
+        finished = true;
+    }
+
+    public int getEntryCount() {
+        return centralRecords.size() + pending.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            closed = true;
+            if (!finished) {
+                cancelPending();
+                finished = true;
+            }
+        } finally {
+            spillFiles.forEach(File::delete);
+            spillFiles.clear();
+            out.close();
+        }
+    }
+
+    private CompressedEntry await(Future<CompressedEntry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            cancelPending();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing zip entries");
+        } catch (ExecutionException e) {
+            cancelPending();
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Error compressing zip entry: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void cancelPending() {
+        for (Future<CompressedEntry> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+    }
+
+    private CompressedEntry compress(String entryName, File file, int level) throws IOException {
+        CRC32 crc = new CRC32();
+        EntryData data = new EntryData(maxEntryBytes);
+        Deflater deflater = level == Deflater.NO_COMPRESSION ? null : new Deflater(level, true);
+        byte[] buffer = BufferPool.acquire();
+        byte[] deflated = deflater == null ? null : BufferPool.acquire();
+        long size = 0;
+
+        try (FileInputStream fis = new FileInputStream(file)) {
+            int length;
+            while ((length = fis.read(buffer)) > 0) {
+                crc.update(buffer, 0, length);
+                size += length;
+
+                if (deflater == null) {
+                    data.write(buffer, 0, length);
+                } else {
+                    deflater.setInput(buffer, 0, length);
+                    while (!deflater.needsInput()) {
+                        data.write(deflated, 0, deflater.deflate(deflated));
+                    }
+                }
+            }
+
+            if (deflater != null) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    data.write(deflated, 0, deflater.deflate(deflated));
+                }
+            }
+            data.finish();
+        } catch (IOException | RuntimeException e) {
+            data.discard();
+            throw e;
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+            BufferPool.release(buffer);
+            BufferPool.release(deflated);
+        }
+
+        // The writer may have been closed while this entry was compressing, nobody would delete its spill file then
+        if (closed) {
+            data.discard();
+            throw new IOException("Zip archive closed");
+        }
+
+        return new CompressedEntry(entryName.getBytes(StandardCharsets.UTF_8), deflater == null ? METHOD_STORED : METHOD_DEFLATED,
+                crc.getValue(), size, data, toDosTime(file.lastModified()));
+    }
+
+    private void writeEntry(CompressedEntry entry) throws IOException {
+        if (entry.size > MAX_ZIP32_VALUE || offset > MAX_ZIP32_VALUE) {
+            throw new IOException("Zip archive is too large");
+        }
+
+        CentralRecord record = new CentralRecord(entry, offset);
+        int versionNeeded = entry.method == METHOD_STORED ? 10 : 20;
+
+        writeInt(LOCAL_HEADER_SIGNATURE);
+        writeShort(versionNeeded);
+        writeShort(FLAG_UTF8);
+        writeShort(entry.method);
+        writeInt(entry.dosTime);
+        writeInt(entry.crc);
+        writeInt(entry.data.length());
+        writeInt(entry.size);
+        writeShort(entry.name.length);
+        writeShort(0);
+        writeBytes(entry.name, entry.name.length);
+        try {
+            entry.data.writeTo(out);
+            offset += entry.data.length();
+        } finally {
+            // Drop the entry data as soon as it's written, only the header fields are kept for the central directory
+            entry.data.discard();
+        }
+
+        centralRecords.add(record);
+    }
+
+    private void writeCentralHeader(CentralRecord record) throws IOException {
+        int versionNeeded = record.method == METHOD_STORED ? 10 : 20;
+
+        writeInt(CENTRAL_HEADER_SIGNATURE);
+        writeShort(20);
+        writeShort(versionNeeded);
+        writeShort(FLAG_UTF8);
+        writeShort(record.method);
+        writeInt(record.dosTime);
+        writeInt(record.crc);
+        writeInt(record.compressedSize);
+        writeInt(record.size);
+        writeShort(record.name.length);
+        writeShort(0);
+        writeShort(0);
+        writeShort(0);
+        writeShort(0);
+        writeInt(0);
+        writeInt(record.localHeaderOffset);
+        writeBytes(record.name, record.name.length);
+    }
+
+    private void writeShort(int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+        offset += 2;
+    }
+
+    private void writeInt(long value) throws IOException {
+        out.write((int) (value & 0xFF));
+        out.write((int) ((value >>> 8) & 0xFF));
+        out.write((int) ((value >>> 16) & 0xFF));
+        out.write((int) ((value >>> 24) & 0xFF));
+        offset += 4;
+    }
+
+    private void writeBytes(byte[] bytes, int length) throws IOException {
+        out.write(bytes, 0, length);
+        offset += length;
+    }
+
+    private static long toDosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (time.getYear() - 1980) << 25) | ((long) time.getMonthValue() << 21) | ((long) time.getDayOfMonth() << 16)
+                | ((long) time.getHour() << 11) | ((long) time.getMinute() << 5) | (time.getSecond() >> 1);
+    }
+
+    private record CompressedEntry(byte[] name, int method, long crc, long size, EntryData data, long dosTime) {
+    }
+
+    private record CentralRecord(byte[] name, int method, long crc, long size, long compressedSize, long dosTime, long localHeaderOffset) {
+        private CentralRecord(CompressedEntry entry, long localHeaderOffset) {
+            this(entry.name, entry.method, entry.crc, entry.size, entry.data.length(), entry.dosTime, localHeaderOffset);
+        }
+    }
+
+    // Compressed data of one entry: a byte array that grows on demand up to SPILL_THRESHOLD, then a temp file.
+    // Refuses to grow past the limit either way
+    private final class EntryData {
+        private final long limit;
+        private byte[] bytes = new byte[BufferPool.BUFFER_SIZE];
+        private long length = 0;
+        private File spillFile;
+        private OutputStream spill;
+
+        private EntryData(long limit) {
+            this.limit = limit;
+        }
+
+        private void write(byte[] source, int off, int len) throws IOException {
+            if (length + len > limit) {
+                throw new SizeLimitedOutputStream.SizeLimitExceededException(limit);
+            }
+
+            if (spill == null && length + len > SPILL_THRESHOLD) {
+                spillFile = File.createTempFile("dfm-zip-entry-", ".tmp");
+                spillFiles.add(spillFile);
+                spill = new BufferedOutputStream(new FileOutputStream(spillFile), BufferPool.BUFFER_SIZE);
+                spill.write(bytes, 0, (int) length);
+                bytes = null;
+            }
+
+            if (spill != null) {
+                spill.write(source, off, len);
+            } else {
+                if (length + len > bytes.length) {
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(SPILL_THRESHOLD, Math.max((long) bytes.length * 2, length + len)));
+                }
+                System.arraycopy(source, off, bytes, (int) length, len);
+            }
+            length += len;
+        }
+
+        private void finish() throws IOException {
+            if (spill != null) {
+                spill.close();
+                spill = null;
+            }
+        }
+
+        private void writeTo(OutputStream target) throws IOException {
+            if (spillFile == null) {
+                target.write(bytes, 0, (int) length);
+                return;
+            }
+
+            byte[] buffer = BufferPool.acquire();
+            try (InputStream in = new FileInputStream(spillFile)) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    target.write(buffer, 0, read);
+                }
+            } finally {
+                BufferPool.release(buffer);
+            }
+        }
+
+        private long length() {
+            return length;
+        }
+
+        private void discard() {
+            bytes = null;
+            if (spill != null) {
+                try {
+                    spill.close();
+                } catch (IOException ignored) {
+                    // Only the file is left to delete
+                }
+                spill = null;
+            }
+            if (spillFile != null) {
+                spillFile.delete();
+                spillFiles.remove(spillFile);
+            }
+        }
+    }
+}
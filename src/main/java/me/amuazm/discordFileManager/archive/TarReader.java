@@ -0,0 +1,265 @@
+package me.amuazm.discordFileManager.archive;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+// Minimal streaming reader for ustar/GNU/pax tar archives. Only what extraction needs is parsed: the entry
+// name (including GNU long names and pax paths), its size and whether it is a regular file.
+class TarReader {
+    private static final int BLOCK_SIZE = 512;
+
+    // Long names and pax headers are read into memory, real ones are a few hundred bytes at most
+    private static final int MAX_METADATA_BYTES = 64 * 1024;
+
+    private final InputStream in;
+    private final ByteBudget budget;
+    private final byte[] header = new byte[BLOCK_SIZE];
+    private long entryRemaining = 0;
+    private long entryPadding = 0;
+
+    // The budget is charged for metadata records and skipped entries, so they count toward the same limit as the
+    // extracted files
+    TarReader(InputStream in, ByteBudget budget) {
+        this.in = in;
+        this.budget = budget;
+    }
+
+    // Skips whatever is left of the current entry and returns the next one, or null at the end of the archive
+    Entry next() throws IOException {
+        String longName = null;
+
+        while (true) {
+            skipRemainder();
+
+            if (!readHeader()) {
+                return null;
+            }
+
+            long size = parseSize();
+            char type = (char) header[156];
+            String name = longName != null ? longName : parseName();
+            longName = null;
+
+            entryRemaining = size;
+            entryPadding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+
+            switch (type) {
+                // GNU long name: the data is the name of the entry that follows
+                case 'L' -> longName = trimNul(new String(readData(size), StandardCharsets.UTF_8));
+                // Pax extended header: may carry the path of the entry that follows
+                case 'x' -> longName = parsePaxPath(readData(size));
+                case '0', '\0', '7' -> {
+                    return new Entry(name, size, true);
+                }
+                default -> {
+                    return new Entry(name, size, false);
+                }
+            }
+        }
+    }
+
+    // Stream over the data of the current entry; it ends at the entry boundary and must not be closed
+    InputStream entryStream() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                if (entryRemaining <= 0) {
+                    return -1;
+                }
+
+                int b = in.read();
+                if (b < 0) {
+                    throw new EOFException("Truncated tar entry");
+                }
+                entryRemaining--;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (entryRemaining <= 0) {
+                    return -1;
+                }
+
+                int read = in.read(buffer, offset, (int) Math.min(length, entryRemaining));
+                if (read < 0) {
+                    throw new EOFException("Truncated tar entry");
+                }
+                entryRemaining -= read;
+                return read;
+            }
+        };
+    }
+
+    private boolean readHeader() throws IOException {
+        int read = in.readNBytes(header, 0, BLOCK_SIZE);
+
+        if (read == 0) {
+            return false;
+        }
+
+        if (read < BLOCK_SIZE) {
+            throw new EOFException("Truncated tar header");
+        }
+
+        // The archive ends with zero blocks
+        boolean empty = true;
+        for (byte b : header) {
+            if (b != 0) {
+                empty = false;
+                break;
+            }
+        }
+
+        if (empty) {
+            return false;
+        }
+
+        long storedChecksum = parseOctal(148, 8);
+        long checksum = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            checksum += (i >= 148 && i < 156) ? ' ' : (header[i] & 0xFF);
+        }
+
+        if (checksum != storedChecksum) {
+            throw new IOException("Not a valid tar archive (header checksum mismatch)");
+        }
+
+        return true;
+    }
+
+    private byte[] readData(long size) throws IOException {
+        if (size > MAX_METADATA_BYTES) {
+            throw new ArchiveExtractor.ExtractionLimitException("Tar metadata entry too large (" + size + " bytes, at most " + MAX_METADATA_BYTES + " allowed)");
+        }
+        budget.consume(size);
+
+        byte[] data = in.readNBytes((int) size);
+        if (data.length < size) {
+            throw new EOFException("Truncated tar entry");
+        }
+
+        entryRemaining = 0;
+        return data;
+    }
+
+    private void skipRemainder() throws IOException {
+        // Skipped data still has to be decompressed, so a huge directory or link entry must not be free
+        budget.consume(entryRemaining + entryPadding);
+        in.skipNBytes(entryRemaining + entryPadding);
+        entryRemaining = 0;
+        entryPadding = 0;
+    }
+
+    private String parseName() {
+        String name = parseString(0, 100);
+        String magic = parseString(257, 6);
+
+        // ustar splits long paths into a prefix and a name
+        if (magic.startsWith("ustar")) {
+            String prefix = parseString(345, 155);
+            if (!prefix.isEmpty()) {
+                return prefix + "/" + name;
+            }
+        }
+
+        return name;
+    }
+
+    private long parseSize() throws IOException {
+        // GNU base-256 encoding for sizes that don't fit in 11 octal digits
+        if ((header[124] & 0x80) != 0) {
+            // The next bit is the sign, and a size never needs more than 63 bits
+            if ((header[124] & 0x40) != 0) {
+                throw new IOException("Not a valid tar archive (negative entry size)");
+            }
+
+            long size = header[124] & 0x3F;
+            for (int i = 125; i < 136; i++) {
+                if (size > Long.MAX_VALUE >>> 8) {
+                    throw new IOException("Not a valid tar archive (entry size too large)");
+                }
+                size = (size << 8) | (header[i] & 0xFF);
+            }
+            return size;
+        }
+
+        long size = parseOctal(124, 12);
+        if (size < 0) {
+            throw new IOException("Invalid tar entry size");
+        }
+        return size;
+    }
+
+    private long parseOctal(int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || b == ' ') {
+                if (value != 0) {
+                    break;
+                }
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                return -1;
+            }
+            value = (value << 3) + (b - '0');
+        }
+        return value;
+    }
+
+    private String parseString(int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    // Pax records look like "<length> <key>=<value>\n"
+    private static String parsePaxPath(byte[] data) {
+        String path = null;
+        int position = 0;
+
+        while (position < data.length) {
+            int space = position;
+            while (space < data.length && data[space] != ' ') {
+                space++;
+            }
+
+            int length;
+            try {
+                length = Integer.parseInt(new String(data, position, space - position, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                break;
+            }
+
+            if (length <= 0 || position + length > data.length) {
+                break;
+            }
+
+            String record = new String(data, space + 1, position + length - space - 2, StandardCharsets.UTF_8);
+            if (record.startsWith("path=")) {
+                path = record.substring(5);
+            }
+            position += length;
+        }
+
+        return path;
+    }
+
+    private static String trimNul(String value) {
+        int end = value.indexOf('\0');
+        return end < 0 ? value : value.substring(0, end);
+    }
+
+    record Entry(String name, long size, boolean file) {
+    }
+
+    interface ByteBudget {
+        void consume(long bytes) throws IOException;
+    }
+}
@@ -1,6 +1,7 @@
 package me.amuazm.discordFileManager.commands;
 
 import me.amuazm.discordFileManager.DiscordFileManager;
+import me.amuazm.discordFileManager.metrics.MetricsReport;
 import me.amuazm.discordFileManager.utils.ConfigManager;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
@@ -28,8 +29,13 @@ public class DfmReloadCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
+        if (args.length > 0 && args[0].equalsIgnoreCase("stats")) {
+            sendStats(sender);
+            return true;
+        }
+
         if (args.length == 0 || !args[0].equalsIgnoreCase("reload")) {
-            sender.sendMessage(ChatColor.YELLOW + "Usage: /dfm reload");
+            sender.sendMessage(ChatColor.YELLOW + "Usage: /dfm <reload|stats>");
             return true;
         }
 
@@ -43,6 +49,7 @@ public class DfmReloadCommand implements CommandExecutor, TabCompleter {
             if (configValid) {
                 // Reload file managers with new config
                 plugin.reloadFileManagers();
+                plugin.reloadMetricsServer();
 
                 if (sender instanceof Player) {
                     sender.sendMessage(ChatColor.GREEN + "DiscordFileManager config and file managers reloaded successfully!");
@@ -65,10 +72,26 @@ public class DfmReloadCommand implements CommandExecutor, TabCompleter {
         return true;
     }
 
+    private void sendStats(CommandSender sender) {
+        if (plugin.getMetrics() == null) {
+            sender.sendMessage(ChatColor.RED + "DiscordFileManager is not running, there are no stats to show.");
+            return;
+        }
+
+        sender.sendMessage(ChatColor.GOLD + "DiscordFileManager stats:");
+        for (String line : new MetricsReport(plugin).renderSummary()) {
+            sender.sendMessage(ChatColor.GRAY + line);
+        }
+
+        if (plugin.getMetricsServer() != null) {
+            sender.sendMessage(ChatColor.GRAY + "Prometheus metrics: http://127.0.0.1:" + plugin.getMetricsServer().getPort() + "/metrics");
+        }
+    }
+
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (args.length == 1) {
-            return Arrays.asList("reload");
+            return Arrays.asList("reload", "stats");
         }
 
         return null;
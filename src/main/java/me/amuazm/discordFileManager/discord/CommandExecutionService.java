@@ -0,0 +1,117 @@
+package me.amuazm.discordFileManager.discord;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Runs command handlers off the JDA event thread on virtual threads, with a global concurrency bound,
+// a queue-depth limit and a per-user cap on in-flight commands
+public class CommandExecutionService {
+    public enum Submission {
+        ACCEPTED,
+        BUSY,
+        USER_LIMIT
+    }
+
+    private final Logger logger;
+    private final ResizableSemaphore slots;
+    // Changed in place by resize() on reload, commands already submitted keep running
+    private volatile int maxConcurrent;
+    private volatile int maxQueued;
+    private volatile int perUserLimit;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Map<String, AtomicInteger> userTasks = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("DiscordFileManager-Command-", 0).factory());
+
+    public CommandExecutionService(Logger logger, int maxConcurrent, int maxQueued, int perUserLimit) {
+        this.logger = logger;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.perUserLimit = perUserLimit;
+        this.slots = new ResizableSemaphore(maxConcurrent);
+    }
+
+    // Shrinking takes effect as running commands finish; their slots are not handed out again
+    public synchronized void resize(int maxConcurrent, int maxQueued, int perUserLimit) {
+        int change = maxConcurrent - this.maxConcurrent;
+        if (change > 0) {
+            slots.release(change);
+        } else if (change < 0) {
+            slots.reduce(-change);
+        }
+
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.perUserLimit = perUserLimit;
+    }
+
+    public Submission submit(String userId, Runnable task) {
+        AtomicInteger userCount = userTasks.computeIfAbsent(userId, key -> new AtomicInteger());
+
+        if (userCount.incrementAndGet() > perUserLimit) {
+            userCount.decrementAndGet();
+            return Submission.USER_LIMIT;
+        }
+
+        if (pending.incrementAndGet() > maxConcurrent + maxQueued) {
+            pending.decrementAndGet();
+            userCount.decrementAndGet();
+            return Submission.BUSY;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    slots.acquire();
+                    try {
+                        task.run();
+                    } finally {
+                        slots.release();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable t) {
+                    logger.log(Level.SEVERE, "Error running Discord command: " + t.getMessage(), t);
+                } finally {
+                    pending.decrementAndGet();
+                    userCount.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            userCount.decrementAndGet();
+            return Submission.BUSY;
+        }
+
+        return Submission.ACCEPTED;
+    }
+
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    // Interrupts running commands and waits briefly for them to finish
+    public void shutdown() {
+        executor.shutdownNow();
+
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warning("Some Discord commands did not finish within 5 seconds of shutdown.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class ResizableSemaphore extends Semaphore {
+        private ResizableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        private void reduce(int permits) {
+            reducePermits(permits);
+        }
+    }
+}
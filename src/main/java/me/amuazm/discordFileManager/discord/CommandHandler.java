@@ -0,0 +1,8 @@
+package me.amuazm.discordFileManager.discord;
+
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+
+@FunctionalInterface
+public interface CommandHandler {
+    void handle(String[] args, MessageReceivedEvent event);
+}
@@ -0,0 +1,139 @@
+package me.amuazm.discordFileManager.discord;
+
+import me.amuazm.discordFileManager.metrics.Metrics;
+import me.amuazm.discordFileManager.utils.ConfigManager;
+import me.amuazm.discordFileManager.utils.ConfigSnapshot;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The single JDA listener for the bot. Filters and tokenizes each message once, then dispatches it through a
+// prebuilt routing table. Reloads swap the table, the listener itself stays registered.
+public class CommandRouter extends ListenerAdapter {
+    private final ConfigManager configManager;
+    private final Metrics metrics;
+    private volatile RoutingTable routes = new RoutingTable(Map.of(), Map.of());
+
+    public CommandRouter(ConfigManager configManager, Metrics metrics) {
+        this.configManager = configManager;
+        this.metrics = metrics;
+    }
+
+    public void setRoutes(List<FileManager> fileManagers, HelpCommand helpCommand) {
+        Map<String, CommandHandler> commands = new HashMap<>();
+        Map<String, FileManager> managersByPrefix = new HashMap<>();
+
+        helpCommand.registerCommands(commands);
+
+        for (FileManager fileManager : fileManagers) {
+            fileManager.registerCommands(commands);
+            managersByPrefix.put(fileManager.getCommandPrefix(), fileManager);
+        }
+
+        routes = new RoutingTable(Map.copyOf(commands), Map.copyOf(managersByPrefix));
+    }
+
+    // Both listeners run on JDA's event thread, so the time spent in them is how busy that thread is
+    @Override
+    public void onMessageReceived(MessageReceivedEvent event) {
+        long start = System.nanoTime();
+        try {
+            routeMessage(event);
+        } finally {
+            metrics.recordEvent(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void onButtonInteraction(ButtonInteractionEvent event) {
+        long start = System.nanoTime();
+        try {
+            routeButton(event);
+        } finally {
+            metrics.recordEvent(System.nanoTime() - start);
+        }
+    }
+
+    private void routeMessage(MessageReceivedEvent event) {
+        // Ignore messages from bots (including our own bot)
+        if (event.getAuthor().isBot()) {
+            return;
+        }
+
+        ConfigSnapshot config = configManager.getSnapshot();
+
+        // Check if message is from the correct guild and channel
+        if (!event.isFromGuild() || event.getGuild().getIdLong() != config.guildId()) {
+            return;
+        }
+
+        if (event.getChannel().getIdLong() != config.channelId()) {
+            return;
+        }
+
+        // Check if user is allowed to run this command
+        if (!config.isAllowedUser(event.getAuthor().getIdLong())) {
+            return;
+        }
+
+        // Look up the command word before splitting, so ordinary chat never gets tokenized
+        String messageContent = event.getMessage().getContentRaw();
+        int commandEnd = messageContent.indexOf(' ');
+        String command = commandEnd < 0 ? messageContent : messageContent.substring(0, commandEnd);
+        CommandHandler handler = routes.commands().get(command);
+
+        if (handler == null) {
+            return;
+        }
+
+        handler.handle(messageContent.split(" "), event);
+    }
+
+    private void routeButton(ButtonInteractionEvent event) {
+        if (event.isAcknowledged()) {
+            return;
+        }
+
+        // Button IDs are "<command prefix>:<action>:<payload>", see FileManager#buttonId
+        String buttonId = event.getButton().getId();
+
+        if (buttonId == null) {
+            return;
+        }
+
+        String[] parts = buttonId.split(":", 3);
+
+        if (parts.length < 3) {
+            return;
+        }
+
+        Member member = event.getMember();
+
+        if (member == null) {
+            return;
+        }
+
+        // Check if user is allowed
+        if (!configManager.getSnapshot().isAllowedUser(event.getUser().getIdLong())) {
+            event.reply("<@" + member.getId() + "> ❌ You don't have permission to use this button.").queue();
+            return;
+        }
+
+        FileManager fileManager = routes.managersByPrefix().get(parts[0]);
+
+        if (fileManager == null) {
+            event.reply("<@" + member.getId() + "> ❌ This button is no longer valid. Please run the command again.").queue();
+            return;
+        }
+
+        fileManager.handleButtonInteraction(event, member, parts[1], parts[2]);
+    }
+
+    private record RoutingTable(Map<String, CommandHandler> commands, Map<String, FileManager> managersByPrefix) {
+    }
+}
@@ -2,33 +2,72 @@ package me.amuazm.discordFileManager.discord;
 
 import lombok.Getter;
 import me.amuazm.discordFileManager.DiscordFileManager;
+import me.amuazm.discordFileManager.archive.ArchiveBuilder;
+import me.amuazm.discordFileManager.archive.ArchiveExtractor;
+import me.amuazm.discordFileManager.archive.ArchivePart;
+import me.amuazm.discordFileManager.archive.ArchiveSource;
+import me.amuazm.discordFileManager.archive.CompressionSettings;
+import me.amuazm.discordFileManager.index.ContentGrep;
+import me.amuazm.discordFileManager.index.DirectoryIndex;
+import me.amuazm.discordFileManager.index.HashCatalog;
+import me.amuazm.discordFileManager.index.IndexedFile;
+import me.amuazm.discordFileManager.index.PathSandbox;
+import me.amuazm.discordFileManager.index.TrigramIndex;
+import me.amuazm.discordFileManager.metrics.Metrics;
+import me.amuazm.discordFileManager.trash.TrashStore;
+import me.amuazm.discordFileManager.trash.TrashVersion;
 import me.amuazm.discordFileManager.utils.ConfigManager;
+import me.amuazm.discordFileManager.utils.ConfigSnapshot;
+import me.amuazm.discordFileManager.utils.ExpiringCache;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
 import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
-import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.components.ActionRow;
 import net.dv8tion.jda.api.interactions.components.buttons.Button;
+import net.dv8tion.jda.api.requests.RestAction;
 import net.dv8tion.jda.api.utils.FileUpload;
+import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
+import net.dv8tion.jda.api.utils.messages.MessageCreateData;
 import org.bukkit.Bukkit;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Stream;
 
-import static me.amuazm.discordFileManager.utils.Utils.splitIntoChunks;
+import static me.amuazm.discordFileManager.utils.Utils.forEachChunk;
 
 @Getter
-public class FileManager extends ListenerAdapter {
+public class FileManager {
     private final DiscordFileManager plugin;
     private final ConfigManager configManager;
     private final Logger logger;
@@ -38,6 +77,15 @@ public class FileManager extends ListenerAdapter {
     private final File rootDir;
     private boolean isDirValid = true;
     private final boolean allowNestedDirs;
+    private final CompressionSettings compression;
+    private final MessageOutbox outbox;
+    private final Metrics metrics;
+    private PathSandbox sandbox;
+    private DirectoryIndex index;
+    private HashCatalog hashCatalog;
+    private TrashStore trashStore;
+    private final AtomicBoolean trashMaintenanceQueued = new AtomicBoolean();
+    private final AtomicBoolean hashCatalogSaveQueued = new AtomicBoolean();
 
     private final String listCommand;
     private final String readCommand;
@@ -46,11 +94,27 @@ public class FileManager extends ListenerAdapter {
     private final String mkdirCommand;
     private final String rmdirCommand;
     private final String searchCommand;
-
-    // Store search results temporarily for button interactions
-    private final Map<String, List<File>> searchResultsCache = new HashMap<>();
-
-    public FileManager(DiscordFileManager plugin, String dirFromPluginFolder, String itemCategory, String commandPrefix, boolean allowNestedDirs) {
+    private final String grepCommand;
+    private final String hashCommand;
+    private final String versionsCommand;
+    private final String restoreCommand;
+
+    private static final long UPLOAD_PROGRESS_INTERVAL_MILLIS = 2000;
+    private static final int MAX_BATCH_SUMMARY_LINES = 50;
+    private static final int MAX_LISTED_VERSIONS = 25;
+    private static final int MAX_BULK_DELETE_PREVIEW = 15;
+    private static final long BULK_DELETE_CONFIRM_MILLIS = 5 * 60 * 1000;
+    private static final long GREP_MAX_FILE_BYTES = 32 * 1024 * 1024;
+    private static final long HASH_CATALOG_SAVE_DELAY_MILLIS = 30_000;
+    private static final Pattern DURATION_PATTERN = Pattern.compile("(\\d+)([smhdw])");
+
+    // Sorted list and search results behind the page and download buttons, kept until they expire
+    private final ExpiringCache<PagedListing> listingCache;
+
+    // Bulk deletes waiting for their confirmation button
+    private final ExpiringCache<PendingDelete> pendingDeletes;
+
+    public FileManager(DiscordFileManager plugin, String dirFromPluginFolder, String itemCategory, String commandPrefix, boolean allowNestedDirs, CompressionSettings compression) {
         this.plugin = plugin;
         this.configManager = plugin.getConfigManager();
         this.logger = plugin.getLogger();
@@ -59,6 +123,14 @@ public class FileManager extends ListenerAdapter {
         this.commandPrefix = commandPrefix;
         this.rootDir = new File(Bukkit.getPluginsFolder(), dirFromPluginFolder);
         this.allowNestedDirs = allowNestedDirs;
+        this.compression = compression;
+        this.outbox = plugin.getMessageOutbox();
+        this.metrics = plugin.getMetrics();
+        this.listingCache = new ExpiringCache<>(configManager.getSnapshot().searchCacheTtlMillis(),
+                configManager.getSnapshot().searchCacheMaxBytes(), listing -> estimatePathsSize(listing.entries()) + 2L * listing.title().length() + (listing.sizes() != null ? 16L * listing.sizes().length : 0)
+                        + (listing.matchLines() != null ? estimatePathsSize(listing.matchLines()) : 0));
+        this.pendingDeletes = new ExpiringCache<>(BULK_DELETE_CONFIRM_MILLIS,
+                configManager.getSnapshot().searchCacheMaxBytes(), pending -> estimatePathsSize(pending.paths()));
 
         listCommand = "$" + commandPrefix + "-list";
         readCommand = "$" + commandPrefix + "-read";
@@ -67,6 +139,10 @@ public class FileManager extends ListenerAdapter {
         mkdirCommand = "$" + commandPrefix + "-mkdir";
         rmdirCommand = "$" + commandPrefix + "-rmdir";
         searchCommand = "$" + commandPrefix + "-search";
+        grepCommand = "$" + commandPrefix + "-grep";
+        hashCommand = "$" + commandPrefix + "-hash";
+        versionsCommand = "$" + commandPrefix + "-versions";
+        restoreCommand = "$" + commandPrefix + "-restore";
 
         // Create directory if it doesn't exist
         if (!rootDir.exists()) {
@@ -84,328 +160,500 @@ public class FileManager extends ListenerAdapter {
             isDirValid = false;
             return;
         }
-    }
 
-    @Override
-    public void onMessageReceived(MessageReceivedEvent event) {
-        // Ignore messages from bots (including our own bot)
-        if (event.getAuthor().isBot()) {
+        // The root's real path is resolved once here; every user path is checked against it
+        try {
+            sandbox = new PathSandbox(rootDir.toPath());
+        } catch (IOException e) {
+            logger.severe("Could not resolve " + dirFromPluginFolder + ": " + e.getMessage());
+            isDirValid = false;
             return;
         }
 
-        // Check if message is from the correct guild and channel
-        if (!event.getGuild().getId().equals(configManager.getGuildId())) {
-            return;
-        }
+        // Build the in-memory index once and keep it current with a watcher
+        index = new DirectoryIndex(sandbox.getRoot(), allowNestedDirs, logger, commandPrefix);
+        index.start();
 
-        if (!event.getChannel().getId().equals(configManager.getChannelId())) {
-            return;
-        }
+        hashCatalog = plugin.openHashCatalog(sandbox.getRoot(), new File(plugin.getDataFolder(), "hashes/" + commandPrefix + ".tsv").toPath());
 
-        Message message = event.getMessage();
+        // Deleted and overwritten files are kept here instead of being posted to the channel
+        ConfigSnapshot config = configManager.getSnapshot();
+        trashStore = plugin.openTrashStore(new File(plugin.getDataFolder(), "trash/" + commandPrefix).toPath(), config.trashMaxBytes(), config.trashMaxAgeMillis());
+        scheduleTrashMaintenance();
+    }
 
-        // Check if user is allowed to run this command
-        if (!configManager.getAllowedUserIds().contains(event.getAuthor().getId())) {
-            return;
+    public void shutdown() {
+        if (index != null) {
+            index.close();
         }
 
-        String messageContent = message.getContentRaw();
-        String[] args = messageContent.split(" ");
+        if (hashCatalog != null) {
+            saveHashCatalog();
+        }
+    }
 
-        if (args.length == 0) {
-            return;
+    public void registerCommands(Map<String, CommandHandler> commands) {
+        // Parsing and auth happen on the event thread in CommandRouter, the handlers themselves run on the command executor
+        commands.put(listCommand, (args, event) -> runCommand("list", event, () -> handleListCommand(args, event)));
+        commands.put(readCommand, (args, event) -> runCommand("read", event, () -> handleReadCommand(args, event)));
+        commands.put(uploadCommand, (args, event) -> runCommand("upload", event, () -> handleUploadCommand(args, event.getMessage().getAttachments(), event)));
+        commands.put(deleteCommand, (args, event) -> runCommand("delete", event, () -> handleDeleteCommand(args, event)));
+        commands.put(searchCommand, (args, event) -> runCommand("search", event, () -> handleSearchCommand(args, event)));
+        commands.put(grepCommand, (args, event) -> runCommand("grep", event, () -> handleGrepCommand(args, event)));
+        commands.put(hashCommand, (args, event) -> runCommand("hash", event, () -> handleHashCommand(args, event)));
+        commands.put(versionsCommand, (args, event) -> runCommand("versions", event, () -> handleVersionsCommand(args, event)));
+        commands.put(restoreCommand, (args, event) -> runCommand("restore", event, () -> handleRestoreCommand(args, event)));
+
+        if (allowNestedDirs) {
+            commands.put(mkdirCommand, (args, event) -> runCommand("mkdir", event, () -> handleMkdirCommand(args, event)));
+            commands.put(rmdirCommand, (args, event) -> runCommand("rmdir", event, () -> handleRmdirCommand(args, event)));
         }
+    }
 
-        List<Message.Attachment> attachments = message.getAttachments();
+    // Buttons are routed back to the manager that created them by the command prefix at the start of the ID
+    private String buttonId(String action, String payload) {
+        return commandPrefix + ":" + action + ":" + payload;
+    }
+
+    private void runCommand(String verb, MessageReceivedEvent event, Runnable handler) {
+        String userId = event.getAuthor().getId();
+        CommandExecutionService.Submission submission = plugin.getCommandExecutionService().submit(userId, timed(verb, handler));
 
-        if (args[0].equals(listCommand)) {
-            handleListCommand(args, event);
-        } else if (args[0].equals(readCommand)) {
-            handleReadCommand(args, event);
-        } else if (args[0].equals(uploadCommand)) {
-            handleUploadCommand(args, attachments, event);
-        } else if (args[0].equals(deleteCommand)) {
-            handleDeleteCommand(args, event);
-        } else if (args[0].equals(mkdirCommand) && allowNestedDirs) {
-            handleMkdirCommand(args, event);
-        } else if (args[0].equals(rmdirCommand) && allowNestedDirs) {
-            handleRmdirCommand(args, event);
-        } else if (args[0].equals(searchCommand)) {
-            handleSearchCommand(args, event);
+        if (submission != CommandExecutionService.Submission.ACCEPTED) {
+            outbox.send(event.getChannel(), "<@" + userId + "> " + getBusyMessage(submission));
         }
     }
 
-    @Override
-    public void onButtonInteraction(ButtonInteractionEvent event) {
-        if (event.isAcknowledged()) {
-            return;
-        }
+    // Records how long the task took from now, so the wait for a free command slot counts too
+    private Runnable timed(String verb, Runnable task) {
+        long start = System.nanoTime();
+        return () -> {
+            try {
+                task.run();
+            } finally {
+                metrics.recordCommand(commandPrefix, verb, System.nanoTime() - start);
+            }
+        };
+    }
 
-        String buttonId = event.getButton().getId();
+    private String getBusyMessage(CommandExecutionService.Submission submission) {
+        return submission == CommandExecutionService.Submission.USER_LIMIT ?
+                "⏳ You already have commands running. Please wait for them to finish and try again." :
+                "⏳ The bot is busy, please try again in a moment.";
+    }
 
-        if (buttonId == null || !buttonId.startsWith("download_search_")) {
-            return;
+    public void handleButtonInteraction(ButtonInteractionEvent event, Member member, String action, String payload) {
+        switch (action) {
+            case "download" -> handleDownloadButton(event, member, payload);
+            case "page" -> handlePageButton(event, member, payload);
+            case "bulkdelete" -> handleBulkDeleteButton(event, member, payload, true);
+            case "cancelbulkdelete" -> handleBulkDeleteButton(event, member, payload, false);
+            default -> event.reply("<@" + member.getId() + "> ❌ This button is no longer valid. Please run the command again.").queue();
         }
+    }
 
-        Member member = event.getMember();
+    private void handleDownloadButton(ButtonInteractionEvent event, Member member, String searchId) {
+        PagedListing listing = listingCache.get(searchId);
+        String[] files = listing != null && listing.searchResults() ? listing.entries() : null;
 
-        if (member == null) {
+        if (files == null || files.length == 0) {
+            event.reply("<@" + member.getId() + "> ❌ Search results have expired. Please run the search again.").queue();
             return;
         }
 
-        // Check if user is allowed
-        if (!configManager.getAllowedUserIds().contains(event.getUser().getId())) {
-            event.reply("<@" + member.getId() + "> ❌ You don't have permission to use this button.").queue();
-            return;
-        }
+        // Zipping can take longer than the 3 seconds Discord allows before a reply
+        event.deferReply().queue();
+        InteractionHook hook = event.getHook();
 
-        // Extract the search ID from the button ID
-        String searchId = buttonId.substring("download_search_".length());
-        List<File> files = searchResultsCache.get(searchId);
+        CommandExecutionService.Submission submission = plugin.getCommandExecutionService().submit(member.getId(), timed("download", () -> sendSearchResultsZip(files, searchId, member, hook)));
 
-        if (files == null || files.isEmpty()) {
-            event.reply("<@" + member.getId() + "> ❌ Search results have expired. Please run the search again.").queue();
-            return;
+        if (submission != CommandExecutionService.Submission.ACCEPTED) {
+            hook.sendMessage("<@" + member.getId() + "> " + getBusyMessage(submission)).queue();
         }
+    }
 
-        try {
-            // Create zip file in memory
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ZipOutputStream zos = new ZipOutputStream(baos);
+    private void sendSearchResultsZip(String[] files, String searchId, Member member, InteractionHook hook) {
+        ArchiveBuilder.Result result = null;
 
-            for (File file : files) {
-                if (file.exists() && file.isFile()) {
-                    addFileToZip(file, rootDir, zos);
+        try {
+            List<ArchiveSource> sources = new ArrayList<>();
+            for (String relativePath : files) {
+                IndexedFile indexedFile = index.get(relativePath);
+                if (indexedFile != null && !indexedFile.directory()) {
+                    sources.add(new ArchiveSource(relativePath, sandbox.getRoot().resolve(relativePath).toFile(), indexedFile.size()));
                 }
             }
 
-            zos.close();
-            byte[] zipData = baos.toByteArray();
-
-            // Check file size (Discord 8MB limit)
-            long maxSizeBytes = 8 * 1024 * 1024;
+            // Pack the files into as many archives as needed to stay under the upload limit
+            result = createArchiveBuilder().build(sources, "search_results_" + searchId);
+            for (ArchiveSource source : sources) {
+                metrics.getBytesRead().add(source.size());
+            }
+            for (ArchivePart part : result.parts()) {
+                metrics.getBytesZipped().add(part.file().length());
+            }
 
-            if (zipData.length > maxSizeBytes) {
-                double fileSizeInMB = zipData.length / (1024.0 * 1024.0);
-                event.reply(String.format("<@" + member.getId() + "> ❌ The resulting zip file is too large (%.2f MB). Discord limit is 8MB.", fileSizeInMB)).queue();
+            if (result.parts().isEmpty()) {
+                hook.sendMessage("<@" + member.getId() + "> ❌ None of the matched files fit within the upload limit of " + formatSize(configManager.getUploadLimitBytes()) + ".").queue();
                 return;
             }
 
-            // Upload the zip file
-            String zipFileName = "search_results_" + searchId + ".zip";
-            event.reply("<@" + member.getId() + "> ✅ Here are your search results:")
-                    .addFiles(FileUpload.fromData(zipData, zipFileName))
-                    .queue();
+            StringBuilder message = new StringBuilder("<@" + member.getId() + "> ✅ Here are your search results");
+            if (result.parts().size() > 1) {
+                message.append(" in ").append(result.parts().size()).append(" parts");
+            }
+            message.append(":");
+            appendSkippedFiles(message, result.skipped());
 
-            logger.info("Created and uploaded zip file with " + files.size() + " files for search ID: " + searchId);
+            sendArchiveParts(result.parts(), message.toString(), hook::sendMessage);
+            result = null;
 
-            // Clean up the cache entry after successful download
-            searchResultsCache.remove(searchId);
+            ExpiringCache.Stats cacheStats = listingCache.getStats();
+            logger.info("Created and uploaded zip file(s) with " + files.length + " files for search ID: " + searchId
+                    + String.format(" (search cache: %d entries, %d bytes, %.0f%% hit rate, %d evicted, %d expired)",
+                    cacheStats.size(), cacheStats.weight(), cacheStats.hitRate() * 100, cacheStats.evictions(), cacheStats.expirations()));
         } catch (Exception e) {
-            event.reply("<@" + member.getId() + "> ❌ Error creating zip file: " + e.getMessage()).queue();
+            hook.sendMessage("<@" + member.getId() + "> ❌ Error creating zip file: " + e.getMessage()).queue();
             logger.severe("Error creating zip file: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            if (result != null) {
+                result.deleteParts();
+            }
         }
     }
 
-    private void handleSearchCommand(String[] args, MessageReceivedEvent event) {
-        MessageChannel channel = event.getChannel();
-
-        if (args.length < 2) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Usage: `" + searchCommand + " <prefix>` - searches for files starting with the given prefix").queue();
-            return;
+    // Rough heap footprint of a path array: the array itself plus a header and one byte per char for each string
+    private static long estimatePathsSize(String[] paths) {
+        long size = 16 + 4L * paths.length;
+        for (String path : paths) {
+            size += 40 + path.length();
         }
+        return size;
+    }
 
-        // Join all arguments after the command to form the search query
-        String searchQuery = String.join(" ", Arrays.copyOfRange(args, 1, args.length)).toLowerCase();
+    private ArchiveBuilder createArchiveBuilder() {
+        return new ArchiveBuilder(plugin.getZipExecutor(), configManager.getZipThreads(), compression, configManager.getUploadLimitBytes());
+    }
 
-        if (searchQuery.length() <= 3) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Search query must be 4 or more characters.").queue();
+    private void appendSkippedFiles(StringBuilder message, List<ArchiveSource> skipped) {
+        if (skipped.isEmpty()) {
             return;
         }
 
-        try {
-            // Search for files recursively if nested dirs allowed, otherwise just in root
-            List<File> matchingFiles = new ArrayList<>();
-            searchFiles(rootDir, searchQuery, matchingFiles);
+        message.append("\n⚠️ Skipped ").append(skipped.size()).append(" file(s) larger than the upload limit of ")
+                .append(formatSize(configManager.getUploadLimitBytes())).append(":");
+        for (ArchiveSource source : skipped) {
+            message.append(" `").append(source.entryName()).append("`");
+        }
+    }
 
-            if (matchingFiles.isEmpty()) {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> 📖 No files found starting with `" + searchQuery + "`").queue();
-                return;
+    // Uploads archive parts in as few messages as the upload limit allows, deleting each temp file once its message is sent
+    private void sendArchiveParts(List<ArchivePart> parts, String header, Function<MessageCreateData, RestAction<?>> sender) {
+        long uploadLimit = configManager.getUploadLimitBytes();
+
+        for (int start = 0, end; start < parts.size(); start = end) {
+            long bytes = parts.get(start).file().length();
+            for (end = start + 1; end < parts.size() && MessageOutbox.canAddFiles(end - start, bytes, 1, parts.get(end).file().length(), uploadLimit); end++) {
+                bytes += parts.get(end).file().length();
             }
 
-            // Sort files alphabetically
-            matchingFiles.sort((f1, f2) -> {
-                String path1 = getRelativePath(f1);
-                String path2 = getRelativePath(f2);
-                return path1.toLowerCase().compareTo(path2.toLowerCase());
-            });
+            List<ArchivePart> batch = parts.subList(start, end);
+            MessageCreateBuilder builder = new MessageCreateBuilder();
 
-            // Build the results message
-            StringBuilder results = new StringBuilder("<@" + event.getAuthor().getId() + ">\n### 🔍 Search Results for prefix `" + searchQuery + "`:\n");
-            results.append("Found **").append(matchingFiles.size()).append(" file(s)**:\n\n");
+            if (start == 0) {
+                builder.setContent(header.length() > Message.MAX_CONTENT_LENGTH ? header.substring(0, Message.MAX_CONTENT_LENGTH - 1) + "…" : header);
+            }
 
-            for (File file : matchingFiles) {
-                String relativePath = getRelativePath(file);
-                results.append("📄 `").append(relativePath).append("`\n");
+            for (ArchivePart part : batch) {
+                builder.addFiles(FileUpload.fromData(part.file(), part.fileName()));
             }
 
-            // Generate a unique ID for this search
-            String searchId = UUID.randomUUID().toString().substring(0, 8);
+            long batchBytes = batch.stream().mapToLong(part -> part.file().length()).sum();
+            sender.apply(builder.build()).queue(success -> {
+                metrics.getBytesUploaded().add(batchBytes);
+                batch.forEach(ArchivePart::delete);
+            }, throwable -> {
+                batch.forEach(ArchivePart::delete);
+                logger.warning("Failed to upload archive: " + throwable.getMessage());
+            });
+        }
+    }
+
+    private static String formatSize(long bytes) {
+        return String.format("%.2f MB", bytes / (1024.0 * 1024.0));
+    }
 
-            // Store the results in cache
-            searchResultsCache.put(searchId, new ArrayList<>(matchingFiles));
+    private void handleSearchCommand(String[] args, MessageReceivedEvent event) {
+        MessageChannel channel = event.getChannel();
 
-            // Clean up old cache entries (keep only last 10 searches)
-            if (searchResultsCache.size() > 10) {
-                Iterator<String> iterator = searchResultsCache.keySet().iterator();
-                iterator.next();
-                iterator.remove();
-            }
+        if (args.length < 2) {
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Usage: `" + searchCommand + " <words...>` - searches for files whose path contains every word");
+            return;
+        }
+
+        // Every argument after the command is a term that must appear somewhere in the path
+        List<String> terms = Arrays.asList(Arrays.copyOfRange(args, 1, args.length));
+        String searchQuery = String.join(" ", terms);
 
-            // Create download button
-            Button downloadButton = Button.primary("download_search_" + searchId, "📥 Download as ZIP");
+        try {
+            // Search the trigram index (recursive if nested dirs allowed, otherwise just root), already ranked.
+            // Ask for one more than the limit so we know whether the results were cut off
+            int resultLimit = configManager.getSearchResultLimit();
+            List<TrigramIndex.Match> matches = index.search(terms, resultLimit + 1);
+            boolean truncated = matches.size() > resultLimit;
+
+            if (truncated) {
+                matches = matches.subList(0, resultLimit);
+            }
 
-            // Send message with results and button
-            String[] chunks = splitIntoChunks(results.toString(), 1900);
+            if (matches.isEmpty()) {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> 📖 No files found matching `" + searchQuery + "`");
+                return;
+            }
 
-            // Send all chunks except the last one
-            for (int i = 0; i < chunks.length - 1; i++) {
-                channel.sendMessage(chunks[i]).queue();
+            String[] matchingFiles = new String[matches.size()];
+            int closeMatches = 0;
+            for (int i = 0; i < matchingFiles.length; i++) {
+                matchingFiles[i] = matches.get(i).relativePath();
+                if (matches.get(i).distance() > 0) {
+                    closeMatches++;
+                }
             }
 
-            // Send the last chunk with the button
-            if (chunks.length > 0) {
-                channel.sendMessage(chunks[chunks.length - 1])
-                        .setActionRow(downloadButton)
-                        .queue();
+            StringBuilder title = new StringBuilder("<@" + event.getAuthor().getId() + ">\n### 🔍 Search Results for `" + searchQuery + "`:\n");
+            // Close matches only come back when nothing matched exactly
+            if (closeMatches > 0) {
+                title.append("No exact matches, showing ").append(truncated ? "the first " : "").append("**").append(closeMatches).append(" close match(es)**:\n");
+            } else if (truncated) {
+                title.append("Showing the first **").append(matchingFiles.length).append(" file(s)**. Add more words to narrow the results:\n");
+            } else {
+                title.append("Found **").append(matchingFiles.length).append(" file(s)**:\n");
             }
 
-            logger.info("Search performed for prefix '" + searchQuery + "' by " + event.getAuthor().getName() + " - Found " + matchingFiles.size() + " files");
+            // One message with page buttons and the download button; pages are rendered from the cached array
+            sendListing(channel, new PagedListing(title.toString(), matchingFiles, true));
+
+            logger.info("Search performed for '" + searchQuery + "' by " + event.getAuthor().getName() + " - Found " + matchingFiles.length + " files (" + closeMatches + " close)");
 
         } catch (Exception e) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Error searching files: " + e.getMessage()).queue();
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Error searching files: " + e.getMessage());
             logger.severe("Error searching files: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
-    private void searchFiles(File directory, String prefix, List<File> results) {
-        if (!directory.exists() || !directory.isDirectory()) {
+    private void handleGrepCommand(String[] args, MessageReceivedEvent event) {
+        MessageChannel channel = event.getChannel();
+        String userId = event.getAuthor().getId();
+        List<String> tokens = tokenize(String.join(" ", Arrays.copyOfRange(args, 1, args.length)));
+
+        if (tokens.isEmpty() || (!allowNestedDirs && tokens.size() > 1)) {
+            outbox.send(channel, "<@" + userId + "> ❌ Usage: `" + grepCommand + " <regex>" + (allowNestedDirs ? " [directory/path]" : "") + "` - searches inside files, quote the regex if it contains spaces");
             return;
         }
 
-        File[] files = directory.listFiles();
-        if (files == null) {
+        String regex = tokens.getFirst();
+        Pattern pattern;
+        try {
+            // ^ and $ match at every line, like grep
+            pattern = Pattern.compile(regex, Pattern.MULTILINE);
+        } catch (PatternSyntaxException e) {
+            outbox.send(channel, "<@" + userId + "> ❌ Invalid regex `" + regex + "`: " + e.getDescription());
             return;
         }
 
-        for (File file : files) {
-            if (file.isFile() && file.getName().toLowerCase().startsWith(prefix)) {
-                results.add(file);
-            }
-
-            // Recursively search subdirectories if nested dirs are allowed
-            if (allowNestedDirs && file.isDirectory()) {
-                searchFiles(file, prefix, results);
-            }
+        String relativePath = String.join(" ", tokens.subList(1, tokens.size()));
+        PathSandbox.ResolvedPath targetDir = resolve(relativePath);
+        if (targetDir == null || !targetDir.isDirectory()) {
+            outbox.send(channel, "<@" + userId + "> ❌ Invalid directory path: `" + relativePath + "`");
+            return;
         }
-    }
 
-    private String getRelativePath(File file) {
-        try {
-            String filePath = file.getCanonicalPath();
-            String rootPath = rootDir.getCanonicalPath();
+        String displayPath = relativePath.isEmpty() ? dirFromPluginFolder : dirFromPluginFolder + "/" + relativePath;
 
-            if (filePath.startsWith(rootPath)) {
-                String relativePath = filePath.substring(rootPath.length());
-                if (relativePath.startsWith(File.separator)) {
-                    relativePath = relativePath.substring(1);
-                }
-                return relativePath.replace(File.separator, "/");
+        try {
+            // Files are scanned in path order, so the matches kept when the cap is hit come from the first files
+            List<IndexedFile> files = new ArrayList<>(index.findFiles(targetDir.relativePath(), file -> true));
+            files.sort(Comparator.comparing(IndexedFile::relativePath, String.CASE_INSENSITIVE_ORDER));
+
+            long start = System.nanoTime();
+            ContentGrep grep = new ContentGrep(plugin.getZipExecutor(), configManager.getZipThreads(), GREP_MAX_FILE_BYTES);
+            ContentGrep.Result result = grep.search(sandbox.getRoot(), files, pattern, configManager.getSearchResultLimit());
+            metrics.getBytesRead().add(result.bytesRead());
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            if (result.hits().isEmpty()) {
+                outbox.send(channel, "<@" + userId + "> 📖 No lines matching `" + regex + "` in `" + displayPath + "`");
+                return;
             }
-        } catch (IOException e) {
-            logger.warning("Error getting relative path for file: " + file.getPath());
-        }
-        return file.getName();
-    }
 
-    private void addFileToZip(File file, File rootDir, ZipOutputStream zos) throws IOException {
-        String relativePath = getRelativePath(file);
+            String[] matchLines = new String[result.hits().size()];
+            Set<String> matchedFiles = new LinkedHashSet<>();
+            for (int i = 0; i < matchLines.length; i++) {
+                ContentGrep.Hit hit = result.hits().get(i);
+                matchedFiles.add(hit.relativePath());
 
-        ZipEntry zipEntry = new ZipEntry(relativePath);
-        zos.putNextEntry(zipEntry);
+                // Backticks in the snippet would end the code span early
+                String snippet = hit.snippet().replace('`', '\'');
+                matchLines[i] = "`" + hit.relativePath() + ":" + hit.line() + ":`" + (snippet.isEmpty() ? "" : " `" + snippet + "`");
+            }
 
-        try (FileInputStream fis = new FileInputStream(file)) {
-            byte[] buffer = new byte[1024];
-            int length;
-            while ((length = fis.read(buffer)) > 0) {
-                zos.write(buffer, 0, length);
+            StringBuilder title = new StringBuilder("<@" + userId + ">\n### 🔎 Lines matching `" + regex + "` in `" + displayPath + "`:\n");
+            if (result.truncated()) {
+                title.append("Showing the first **").append(matchLines.length).append(" match(es)** in **").append(matchedFiles.size())
+                        .append(" file(s)**. Use a narrower regex or path to see the rest");
+            } else {
+                title.append("Found **").append(matchLines.length).append(" match(es)** in **").append(matchedFiles.size()).append(" file(s)**");
             }
-        }
+            if (result.filesSkipped() > 0) {
+                title.append(" (").append(result.filesSkipped()).append(" binary, oversized or unreadable file(s) skipped)");
+            }
+            title.append(":\n");
 
-        zos.closeEntry();
+            // The download button zips the matched files
+            sendListing(channel, PagedListing.ofMatches(title.toString(), matchLines, matchedFiles.toArray(new String[0])));
+
+            logger.info("Grep for '" + regex + "' in " + displayPath + " by " + event.getAuthor().getName() + " - " + matchLines.length + " matches in "
+                    + matchedFiles.size() + " files, scanned " + result.filesScanned() + " files (" + formatSize(result.bytesRead()) + ") in " + elapsedMillis + "ms");
+        } catch (Exception e) {
+            outbox.send(channel, "<@" + userId + "> ❌ Error searching file contents: " + e.getMessage());
+            logger.severe("Error searching file contents: " + e.getMessage());
+            e.printStackTrace();
+        }
     }
 
     private void handleListCommand(String[] args, MessageReceivedEvent event) {
         MessageChannel channel = event.getChannel();
 
         try {
+            // "--by size|mtime|name" may come before the path
+            PagedListing.SortOrder order = PagedListing.SortOrder.NAME;
+            int pathStart = 1;
+
+            if (args.length > 1 && args[1].equals("--by")) {
+                order = args.length > 2 ? PagedListing.SortOrder.parse(args[2]) : null;
+                if (order == null) {
+                    outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Usage: `" + listCommand + " [--by size|mtime|name]" + (allowNestedDirs ? " [directory/path]" : "") + "`");
+                    return;
+                }
+                pathStart = 3;
+            }
+
             String relativePath = "";
-            if (args.length > 1) {
-                // Join all arguments after the command to form the path
-                relativePath = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+            if (args.length > pathStart) {
+                // Join all remaining arguments to form the path
+                relativePath = String.join(" ", Arrays.copyOfRange(args, pathStart, args.length));
             }
 
-            File targetDir = resolveDirectory(relativePath);
+            PathSandbox.ResolvedPath targetDir = resolve(relativePath);
             if (targetDir == null) {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Invalid directory path: `" + relativePath + "`").queue();
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Invalid directory path: `" + relativePath + "`");
                 return;
             }
 
-            File[] files = targetDir.listFiles();
+            List<IndexedFile> files = index.list(targetDir.relativePath());
             String displayPath = relativePath.isEmpty() ? dirFromPluginFolder : dirFromPluginFolder + "/" + relativePath;
 
-            if (files == null || files.length == 0) {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> 📖 No files found inside `" + displayPath + "`").queue();
+            if (files == null || files.isEmpty()) {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> 📖 No files found inside `" + displayPath + "`");
                 return;
             }
 
-            // Sort files: directories first, then files, both alphabetically
-            Arrays.sort(files, (f1, f2) -> {
-                if (f1.isDirectory() && !f2.isDirectory()) return -1;
-                if (!f1.isDirectory() && f2.isDirectory()) return 1;
-                return f1.getName().toLowerCase().compareTo(f2.getName().toLowerCase());
-            });
-
-            StringBuilder fileList = new StringBuilder("<@" + event.getAuthor().getId() + ">\n### 📖 " + itemCategory + " Files in `" + displayPath + "`:\n");
+            StringBuilder title = new StringBuilder("<@" + event.getAuthor().getId() + ">\n### 📖 " + itemCategory + " Files in `" + displayPath + "`");
+            switch (order) {
+                case SIZE -> title.append(" (largest first)");
+                case MTIME -> title.append(" (newest first)");
+                default -> {
+                }
+            }
+            title.append(":\n");
 
             // Add parent directory navigation if we're in a subdirectory
             if (!relativePath.isEmpty() && allowNestedDirs) {
                 String parentPath = getParentPath(relativePath);
                 String parentDisplay = parentPath.isEmpty() ? ".." : "../" + parentPath;
-                fileList.append("📁 `").append(parentDisplay).append("/` (parent directory)\n");
+                title.append("📁 `").append(parentDisplay).append("/` (parent directory)\n");
             }
 
-            for (File file : files) {
-                if (file.isDirectory() && allowNestedDirs) {
-                    fileList.append("📁 `").append(file.getName()).append("/`\n");
-                } else if (file.isFile()) {
-                    fileList.append("📄 `").append(file.getName()).append("`\n");
-                }
+            PagedListing listing = PagedListing.ofDirectory(title.toString(), files, allowNestedDirs, order);
+            if (listing.entries().length == 0) {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> 📖 No files found inside `" + displayPath + "`");
+                return;
             }
 
-            Arrays.stream(splitIntoChunks(fileList.toString(), 1900)).forEach(s -> {
-                channel.sendMessage(s).queue();
-            });
-
+            sendListing(channel, listing);
         } catch (Exception e) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ An error occurred while listing " + itemCategory + " files.").queue();
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ An error occurred while listing " + itemCategory + " files.");
             logger.severe("Error listing " + itemCategory + " files: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    // Sends the first page of a listing; later pages are rendered when a page button is pressed
+    private void sendListing(MessageChannel channel, PagedListing listing) {
+        String listingId = UUID.randomUUID().toString().substring(0, 8);
+        String content = listing.render(0);
+
+        // Buttons for a listing too big to keep would only ever answer that it expired
+        if (!listingCache.put(listingId, listing)) {
+            String note = "\n-# Too many results to keep for paging or download, narrow it down to see the rest.";
+            if (listing.getPageCount() > 1 || listing.searchResults()) {
+                content = content.length() + note.length() <= Message.MAX_CONTENT_LENGTH ? content + note : content;
+            }
+            outbox.sendSeparately(channel, new MessageCreateBuilder().setContent(content).build());
+            return;
+        }
+
+        MessageCreateBuilder builder = new MessageCreateBuilder().setContent(content);
+        List<Button> buttons = getPageButtons(listingId, listing, 0);
+        if (!buttons.isEmpty()) {
+            builder.setActionRow(buttons);
+        }
+
+        outbox.sendSeparately(channel, builder.build());
+    }
+
+    private void handlePageButton(ButtonInteractionEvent event, Member member, String payload) {
+        int separator = payload.lastIndexOf(':');
+        String listingId = separator < 0 ? payload : payload.substring(0, separator);
+        PagedListing listing = listingCache.get(listingId);
+
+        if (listing == null) {
+            event.reply("<@" + member.getId() + "> ❌ This listing has expired. Please run the command again.").queue();
+            return;
+        }
+
+        int page;
+        try {
+            page = Math.clamp(Integer.parseInt(payload.substring(separator + 1)), 0, listing.getPageCount() - 1);
+        } catch (NumberFormatException e) {
+            page = 0;
+        }
+
+        // Edit the listing in place instead of posting a new message
+        List<Button> buttons = getPageButtons(listingId, listing, page);
+        event.editMessage(listing.render(page))
+                .setComponents(buttons.isEmpty() ? List.of() : List.of(ActionRow.of(buttons)))
+                .queue();
+    }
+
+    private List<Button> getPageButtons(String listingId, PagedListing listing, int page) {
+        List<Button> buttons = new ArrayList<>(3);
+        int pageCount = listing.getPageCount();
+
+        if (pageCount > 1) {
+            buttons.add(Button.secondary(buttonId("page", listingId + ":" + (page - 1)), "◀ Previous").withDisabled(page == 0));
+            buttons.add(Button.secondary(buttonId("page", listingId + ":" + (page + 1)), "Next ▶").withDisabled(page >= pageCount - 1));
+        }
+
+        if (listing.searchResults()) {
+            buttons.add(Button.primary(buttonId("download", listingId), "📥 Download as ZIP"));
+        }
+
+        return buttons;
+    }
+
     private void handleReadCommand(String[] args, MessageReceivedEvent event) {
         MessageChannel channel = event.getChannel();
 
@@ -413,7 +661,7 @@ public class FileManager extends ListenerAdapter {
             String usage = allowNestedDirs ?
                     "`" + readCommand + " <path/to/filename>` or `" + readCommand + " <filename>`" :
                     "`" + readCommand + " <filename>`";
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> 📖 Usage: " + usage).queue();
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> 📖 Usage: " + usage);
             return;
         }
 
@@ -425,9 +673,9 @@ public class FileManager extends ListenerAdapter {
         }
 
         try {
-            File targetFile = resolveFile(filePath);
+            PathSandbox.ResolvedPath targetFile = resolve(filePath);
             if (targetFile == null) {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Invalid file path: `" + filePath + "`").queue();
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Invalid file path: `" + filePath + "`");
                 return;
             }
 
@@ -438,7 +686,7 @@ public class FileManager extends ListenerAdapter {
             // Send file via channel
             uploadFile(targetFile, event);
         } catch (Exception e) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Error accessing " + itemCategory + " file: " + filePath).queue();
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Error accessing " + itemCategory + " file: " + filePath);
             logger.severe("Error accessing " + itemCategory + " file: " + e.getMessage());
             e.printStackTrace();
         }
@@ -448,12 +696,20 @@ public class FileManager extends ListenerAdapter {
         MessageChannel channel = event.getChannel();
 
         if (attachments.isEmpty()) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Please attach a file to upload.").queue();
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Please attach a file to upload.");
             return;
         }
 
+        // "--extract" unpacks an attached archive into the directory that follows it
+        if (args.length > 1 && args[1].equals("--extract")) {
+            handleExtractUpload(String.join(" ", Arrays.copyOfRange(args, 2, args.length)), attachments, event);
+            return;
+        }
+
+        // With several attachments the path (if any) names the directory they all go into
         if (attachments.size() > 1) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Please attach only one file at a time.").queue();
+            String targetDir = args.length > 1 ? String.join(" ", Arrays.copyOfRange(args, 1, args.length)) : "";
+            handleBatchUpload(targetDir, attachments, event);
             return;
         }
 
@@ -479,261 +735,1288 @@ public class FileManager extends ListenerAdapter {
 
         try {
             // Ensure parent directories exist if nested dirs are allowed
-            File targetFile = resolveFile(targetPath);
-            if (targetFile == null) {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Invalid file path: `" + targetPath + "`").queue();
+            PathSandbox.ResolvedPath target = resolve(targetPath);
+            if (target == null) {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Invalid file path: `" + targetPath + "`");
                 return;
             }
 
             // Check if the target path is an existing directory
-            if (targetFile.exists() && targetFile.isDirectory()) {
+            File targetFile = target.toFile();
+            if (target.isDirectory()) {
                 String suggestion = allowNestedDirs ?
                         "To upload to this directory, use: `" + uploadCommand + " " + targetPath + "/`" :
                         "Cannot upload to directories. Please specify a filename.";
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ `" + targetPath + "` is a directory, not a file. " + suggestion).queue();
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ `" + targetPath + "` is a directory, not a file. " + suggestion);
                 return;
             }
 
             // Create parent directories if they don't exist and nested dirs are allowed
             if (allowNestedDirs && targetFile.getParentFile() != null && !targetFile.getParentFile().exists()) {
                 if (!targetFile.getParentFile().mkdirs()) {
-                    channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Failed to create parent directories for: `" + targetPath + "`").queue();
+                    outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Failed to create parent directories for: `" + targetPath + "`");
                     return;
                 }
             }
 
-            // Upload any existing file to the channel
-            if (targetFile.exists()) {
-                // Double-check it's actually a file (not a directory) before trying to read it
-                if (!targetFile.isFile()) {
-                    channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Cannot overwrite `" + targetPath + "` - it's not a file.").queue();
+            // Double-check it's actually a file (not a directory) before replacing it
+            if (target.exists() && !target.isFile()) {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Cannot overwrite `" + targetPath + "` - it's not a file.");
+                return;
+            }
+
+            // Download into a temp file first, so a failed download never costs the existing file
+            File tempFile = Files.createTempFile(getUploadTempDir(), "upload-", ".tmp").toFile();
+
+            try {
+                String sha256 = downloadHashed(attachment, tempFile);
+
+                // A byte-identical upload needs neither a new version nor a write
+                if (matchesExisting(target, tempFile.length(), sha256)) {
+                    outbox.send(channel, "<@" + event.getAuthor().getId() + "> ✅ `" + targetPath + "` is identical to the file already on the server, nothing to do.");
+                    logger.info(itemCategory + " file upload skipped as identical: " + targetPath + " by " + event.getAuthor().getName());
                     return;
                 }
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> 📖 File `" + targetPath + "` already exists. Uploading existing here and replacing with new file in server.").queue();
-                uploadFile(targetFile, event);
-            }
-
-            // Download and save the file
-            String finalTargetPath = targetPath;
-            attachment.getProxy().downloadToFile(targetFile).whenComplete((file, throwable) -> {
-                if (throwable != null) {
-                    channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Failed to upload " + itemCategory + " file: " + throwable.getMessage()).queue();
-                    logger.severe("Error uploading " + itemCategory + " file: " + throwable.getMessage());
-                    throwable.printStackTrace();
-                } else {
-                    channel.sendMessage("<@" + event.getAuthor().getId() + "> ✅ Successfully uploaded `" + finalTargetPath + "` to " + dirFromPluginFolder).queue();
-                    logger.info(itemCategory + " file uploaded: " + finalTargetPath + " by " + event.getAuthor().getName());
+
+                String keptVersion = "";
+                if (targetFile.exists()) {
+                    TrashVersion previous = moveToTrash(targetFile, "overwritten");
+                    keptVersion = " The previous version was kept as `#" + previous.id() + "`.";
                 }
-            });
+
+                Files.move(tempFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                index.refresh(targetFile.toPath());
+                recordHash(target.relativePath(), sha256);
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ✅ Successfully uploaded `" + targetPath + "` to " + dirFromPluginFolder + "." + keptVersion);
+                logger.info(itemCategory + " file uploaded: " + targetPath + " by " + event.getAuthor().getName());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Failed to upload " + itemCategory + " file: " + cause.getMessage());
+                logger.severe("Error uploading " + itemCategory + " file: " + cause.getMessage());
+                cause.printStackTrace();
+            } finally {
+                deleteTempFile(tempFile);
+            }
         } catch (Exception e) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Error uploading " + itemCategory + " file: " + e.getMessage()).queue();
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Error uploading " + itemCategory + " file: " + e.getMessage());
             logger.severe("Error uploading " + itemCategory + " file: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
-    private void handleDeleteCommand(String[] args, MessageReceivedEvent event) {
+    private void handleBatchUpload(String targetDir, List<Message.Attachment> attachments, MessageReceivedEvent event) {
         MessageChannel channel = event.getChannel();
-
-        if (args.length < 2) {
-            String usage = allowNestedDirs ?
-                    "`" + deleteCommand + " <path/to/filename>` or `" + deleteCommand + " <filename>`" :
-                    "`" + deleteCommand + " <filename>`";
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Usage: " + usage).queue();
-            return;
-        }
-
-        // Join all arguments after the command to form the file path
-        String filePath = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
-
-        if (handleFilePath(filePath, event)) {
-            return;
-        }
+        String userId = event.getAuthor().getId();
+        String dirPath = targetDir.replaceAll("/+$", "");
 
         try {
-            File targetFile = resolveFile(filePath);
-            if (targetFile == null) {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Invalid file path: `" + filePath + "`").queue();
-                return;
-            }
-
-            if (handleFile(targetFile, event)) {
+            if (prepareUploadDirectory(dirPath, event) == null) {
                 return;
             }
 
-            // Upload as backup
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> 📖 Uploading file to delete as backup.").queue();
-            uploadFile(targetFile, event);
+            String displayDir = dirPath.isEmpty() ? dirFromPluginFolder : dirPath;
+            int total = attachments.size();
+            Message progressMessage = outbox.sendSeparately(channel, "<@" + userId + "> 📥 Uploading " + total + " files to `" + displayDir + "`...").join();
 
-            // Attempt to delete the file
-            if (targetFile.delete()) {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ✅ Successfully deleted `" + filePath + "` from " + dirFromPluginFolder).queue();
-                logger.info(itemCategory + " file deleted: " + filePath + " by " + event.getAuthor().getName());
-            } else {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Failed to delete `" + filePath + "`. The file may be in use or permission denied.").queue();
-                logger.warning("Failed to delete " + itemCategory + " file: " + filePath);
-            }
+            // Download everything into temp files first, so existing files are only touched once their backup exists
+            BatchUpload[] uploads = downloadBatch(attachments, dirPath, displayDir, progressMessage, userId);
+            finishBatchUpload(uploads, "Uploaded", displayDir, progressMessage, channel, userId);
         } catch (Exception e) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Error deleting file: " + e.getMessage()).queue();
-            logger.severe("Error deleting " + itemCategory + " file: " + e.getMessage());
+            outbox.send(channel, "<@" + userId + "> ❌ Error uploading " + itemCategory + " files: " + e.getMessage());
+            logger.severe("Error uploading " + itemCategory + " files: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
-    private void handleMkdirCommand(String[] args, MessageReceivedEvent event) {
+    private void handleExtractUpload(String targetDir, List<Message.Attachment> attachments, MessageReceivedEvent event) {
         MessageChannel channel = event.getChannel();
+        String userId = event.getAuthor().getId();
+        String dirPath = targetDir.replaceAll("/+$", "");
 
-        if (args.length < 2) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Usage: `" + mkdirCommand + " <directory/path>`").queue();
+        if (attachments.size() != 1) {
+            outbox.send(channel, "<@" + userId + "> ❌ Please attach exactly one archive to extract.");
             return;
         }
 
-        // Join all arguments after the command to form the directory path
-        String dirPath = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+        Message.Attachment attachment = attachments.getFirst();
+        String archiveName = attachment.getFileName();
 
-        if (handleDirectoryPath(dirPath, event)) {
+        if (!ArchiveExtractor.isSupported(archiveName)) {
+            outbox.send(channel, "<@" + userId + "> ❌ `" + archiveName + "` is not a .zip or .tar.gz archive.");
             return;
         }
 
+        Path stagingDir = null;
+
         try {
-            File targetDir = resolveDirectory(dirPath);
-            if (targetDir == null) {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Invalid directory path: `" + dirPath + "`").queue();
+            if (prepareUploadDirectory(dirPath, event) == null) {
                 return;
             }
 
-            if (targetDir.exists()) {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Directory `" + dirPath + "` already exists.").queue();
+            String displayDir = dirPath.isEmpty() ? dirFromPluginFolder : dirPath;
+            Message progressMessage = outbox.sendSeparately(channel, "<@" + userId + "> 📦 Extracting `" + archiveName + "` into `" + displayDir + "`...").join();
+
+            stagingDir = Files.createTempDirectory(getUploadTempDir(), "extract-");
+
+            // The archive is read straight from the download, only its entries are staged on disk
+            List<ArchiveExtractor.ExtractedEntry> entries;
+            ConfigSnapshot config = configManager.getSnapshot();
+            try (InputStream in = attachment.getProxy().download().get()) {
+                entries = new ArchiveExtractor(config.extractMaxBytes(), config.extractMaxFiles()).extract(in, archiveName, stagingDir);
+                metrics.getBytesReceived().add(attachment.getSize());
+            } catch (ArchiveExtractor.ExtractionLimitException e) {
+                progressMessage.delete().queue(null, throwable -> {});
+                outbox.send(channel, "<@" + userId + "> ❌ Refusing to extract `" + archiveName + "`: " + e.getMessage() + ". Nothing was changed.");
+                logger.warning("Refused to extract " + archiveName + " uploaded by " + event.getAuthor().getName() + ": " + e.getMessage());
                 return;
             }
 
-            if (targetDir.mkdirs()) {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ✅ Successfully created directory `" + dirPath + "`").queue();
-                logger.info("Directory created: " + dirPath + " by " + event.getAuthor().getName());
-            } else {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Failed to create directory `" + dirPath + "`").queue();
-                logger.warning("Failed to create directory: " + dirPath);
+            if (entries.isEmpty()) {
+                progressMessage.delete().queue(null, throwable -> {});
+                outbox.send(channel, "<@" + userId + "> 📖 `" + archiveName + "` does not contain any files.");
+                return;
+            }
+
+            // If an archive contains the same path twice, the later entry wins
+            Map<String, BatchUpload> uploads = new LinkedHashMap<>();
+            for (ArchiveExtractor.ExtractedEntry entry : entries) {
+                String targetPath = dirPath.isEmpty() ? entry.name() : dirPath + "/" + entry.name();
+                BatchUpload previous = uploads.put(targetPath, stageExtractedEntry(entry, targetPath));
+                if (previous != null) {
+                    deleteTempFile(previous.tempFile());
+                }
             }
+
+            finishBatchUpload(uploads.values().toArray(new BatchUpload[0]), "Extracted", displayDir, progressMessage, channel, userId);
         } catch (Exception e) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Error creating directory: " + e.getMessage()).queue();
-            logger.severe("Error creating directory: " + e.getMessage());
+            outbox.send(channel, "<@" + userId + "> ❌ Error extracting `" + archiveName + "`: " + e.getMessage());
+            logger.severe("Error extracting " + itemCategory + " archive: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            if (stagingDir != null) {
+                deleteStagingDir(stagingDir);
+            }
         }
     }
 
-    private void handleRmdirCommand(String[] args, MessageReceivedEvent event) {
-        MessageChannel channel = event.getChannel();
+    // Applies the same checks to an archive entry as to a typed path, and spots entries that match the existing file
+    private BatchUpload stageExtractedEntry(ArchiveExtractor.ExtractedEntry entry, String targetPath) {
+        String name = entry.name();
+        String problem = null;
+        PathSandbox.ResolvedPath target = null;
+
+        if (name.isEmpty() || name.startsWith("/") || hasParentSegment(name)) {
+            problem = "unsafe path in archive";
+        } else if (!allowNestedDirs && name.contains("/")) {
+            problem = "subdirectories are not allowed here";
+        } else if ((target = resolve(targetPath)) == null) {
+            problem = "invalid file path";
+        } else if (target.isDirectory()) {
+            problem = "a directory with this name exists";
+        }
 
-        if (args.length < 2) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Usage: `" + rmdirCommand + " <directory/path>`").queue();
-            return;
+        if (problem != null) {
+            deleteTempFile(entry.file());
+            return BatchUpload.failed(targetPath, problem);
         }
 
-        // Join all arguments after the command to form the directory path
-        String dirPath = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+        File targetFile = target.toFile();
+        if (!target.isFile()) {
+            return new BatchUpload(targetPath, targetFile, entry.file(), entry.sha256(), UploadStatus.CREATED, null);
+        }
 
-        if (handleDirectoryPath(dirPath, event)) {
-            return;
+        if (matchesExisting(target, entry.size(), entry.sha256())) {
+            return new BatchUpload(targetPath, targetFile, entry.file(), entry.sha256(), UploadStatus.IDENTICAL, null);
         }
 
-        try {
-            File targetDir = resolveDirectory(dirPath);
-            if (targetDir == null) {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Invalid directory path: `" + dirPath + "`").queue();
-                return;
-            }
+        return new BatchUpload(targetPath, targetFile, entry.file(), entry.sha256(), UploadStatus.REPLACED, null);
+    }
 
-            if (!targetDir.exists()) {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Directory `" + dirPath + "` does not exist.").queue();
-                return;
-            }
+    private void deleteStagingDir(Path stagingDir) {
+        try (Stream<Path> leftovers = Files.list(stagingDir)) {
+            leftovers.forEach(file -> deleteTempFile(file.toFile()));
+            Files.deleteIfExists(stagingDir);
+        } catch (IOException e) {
+            logger.warning("Could not delete staging directory " + stagingDir + ": " + e.getMessage());
+        }
+    }
 
-            if (!targetDir.isDirectory()) {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ `" + dirPath + "` is not a directory.").queue();
-                return;
-            }
+    // Validates and creates the directory a multi-file upload goes into. Returns null after telling the user what's wrong
+    private File prepareUploadDirectory(String dirPath, MessageReceivedEvent event) {
+        MessageChannel channel = event.getChannel();
+        String userId = event.getAuthor().getId();
 
-            // Check if directory is empty
-            File[] files = targetDir.listFiles();
-            if (files != null && files.length > 0) {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Directory `" + dirPath + "` is not empty. Please delete all files and subdirectories first.").queue();
-                return;
+        if (!dirPath.isEmpty()) {
+            if (!allowNestedDirs) {
+                outbox.send(channel, "<@" + userId + "> ❌ Multiple files can only be uploaded to the root directory. Usage: `" + uploadCommand + "` with the files attached.");
+                return null;
             }
 
-            if (targetDir.delete()) {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ✅ Successfully deleted directory `" + dirPath + "`").queue();
-                logger.info("Directory deleted: " + dirPath + " by " + event.getAuthor().getName());
-            } else {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Failed to delete directory `" + dirPath + "`").queue();
-                logger.warning("Failed to delete directory: " + dirPath);
+            if (handleDirectoryPath(dirPath, event)) {
+                return null;
             }
-        } catch (Exception e) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Error deleting directory: " + e.getMessage()).queue();
-            logger.severe("Error deleting directory: " + e.getMessage());
-            e.printStackTrace();
         }
-    }
-
-    private File resolveFile(String relativePath) {
-        try {
-            // Normalize the path and resolve it against the root directory
-            Path normalizedPath = Paths.get(relativePath).normalize();
-            File targetFile = new File(rootDir, normalizedPath.toString());
 
-            // Ensure the resolved file is within the root directory
-            if (!targetFile.getCanonicalPath().startsWith(rootDir.getCanonicalPath())) {
-                return null;
-            }
+        PathSandbox.ResolvedPath targetDirectory = resolve(dirPath);
+        if (targetDirectory == null) {
+            outbox.send(channel, "<@" + userId + "> ❌ Invalid directory path: `" + dirPath + "`");
+            return null;
+        }
 
-            return targetFile;
-        } catch (IOException e) {
-            logger.warning("Error resolving file path: " + relativePath + " - " + e.getMessage());
+        if (targetDirectory.exists() && !targetDirectory.isDirectory()) {
+            outbox.send(channel, "<@" + userId + "> ❌ `" + dirPath + "` is a file, not a directory.");
             return null;
         }
-    }
 
-    private File resolveDirectory(String relativePath) {
-        if (relativePath.isEmpty()) {
-            return rootDir;
+        if (!targetDirectory.exists() && !targetDirectory.toFile().mkdirs()) {
+            outbox.send(channel, "<@" + userId + "> ❌ Failed to create directory: `" + dirPath + "`");
+            return null;
         }
 
-        try {
-            // Normalize the path and resolve it against the root directory
-            Path normalizedPath = Paths.get(relativePath).normalize();
-            File targetDir = new File(rootDir, normalizedPath.toString());
+        return targetDirectory.toFile();
+    }
 
-            // Ensure the resolved directory is within the root directory
-            if (!targetDir.getCanonicalPath().startsWith(rootDir.getCanonicalPath())) {
-                return null;
+    // Moves the staged files into place, keeping every file they replace in the trash store, and posts one summary
+    private void finishBatchUpload(BatchUpload[] uploads, String verb, String displayDir, Message progressMessage, MessageChannel channel, String userId) {
+        for (int i = 0; i < uploads.length; i++) {
+            BatchUpload upload = uploads[i];
+            if (upload.status() != UploadStatus.CREATED && upload.status() != UploadStatus.REPLACED) {
+                deleteTempFile(upload.tempFile());
+                continue;
             }
 
-            return targetDir;
-        } catch (IOException e) {
-            logger.warning("Error resolving directory path: " + relativePath + " - " + e.getMessage());
-            return null;
+            try {
+                if (upload.status() == UploadStatus.REPLACED) {
+                    TrashVersion previous = moveToTrash(upload.targetFile(), "overwritten");
+                    upload = upload.withDetail("previous version `#" + previous.id() + "`");
+                    uploads[i] = upload;
+                }
+
+                Files.createDirectories(upload.targetFile().getParentFile().toPath());
+                Files.move(upload.tempFile().toPath(), upload.targetFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+                index.refresh(upload.targetFile().toPath());
+                recordHash(index.relativize(upload.targetFile().toPath()), upload.sha256());
+            } catch (IOException e) {
+                uploads[i] = upload.fail(e.getMessage());
+                deleteTempFile(upload.tempFile());
+                logger.warning("Error moving uploaded " + itemCategory + " file into place: " + upload.targetPath() + " - " + e.getMessage());
+            }
         }
-    }
 
-    private String getParentPath(String path) {
-        Path pathObj = Paths.get(path);
-        Path parent = pathObj.getParent();
-        return parent != null ? parent.toString().replace("\\", "/") : "";
+        String summary = buildBatchSummary(uploads, verb, displayDir, userId);
+        logger.info(verb + " " + uploads.length + " " + itemCategory + " file(s) to " + displayDir + " for user " + userId);
+
+        progressMessage.delete().queue(null, throwable -> {});
+        forEachChunk(summary, 1900, chunk -> outbox.send(channel, chunk));
     }
 
-    private boolean handleFilePath(String filePath, MessageReceivedEvent event) {
-        MessageChannel channel = event.getChannel();
+    // Downloads all attachments concurrently, at most upload-parallelism at a time, editing the progress message as they finish
+    private BatchUpload[] downloadBatch(List<Message.Attachment> attachments, String dirPath, String displayDir, Message progressMessage, String userId) throws IOException {
+        int total = attachments.size();
+        BatchUpload[] uploads = new BatchUpload[total];
+        Semaphore permits = new Semaphore(configManager.getUploadParallelism());
+        AtomicInteger completed = new AtomicInteger();
+        AtomicLong lastProgressUpdate = new AtomicLong(System.currentTimeMillis());
+        Set<String> targetPaths = new HashSet<>();
+
+        Path tempDir = getUploadTempDir();
+
+        try (ExecutorService downloads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < total; i++) {
+                Message.Attachment attachment = attachments.get(i);
+                String targetPath = dirPath.isEmpty() ? attachment.getFileName() : dirPath + "/" + attachment.getFileName();
+                int slot = i;
+
+                if (!targetPaths.add(targetPath)) {
+                    uploads[slot] = BatchUpload.failed(targetPath, "another attachment has the same name");
+                    completed.incrementAndGet();
+                    continue;
+                }
 
-        if (filePath.trim().isEmpty()) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ File path cannot be empty.").queue();
-            return true;
+                downloads.execute(() -> {
+                    try {
+                        permits.acquire();
+                        try {
+                            uploads[slot] = downloadBatchFile(attachment, targetPath, tempDir);
+                        } finally {
+                            permits.release();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        uploads[slot] = BatchUpload.failed(targetPath, "cancelled");
+                    }
+
+                    // Discord rate limits message edits, so progress is shown at most once per interval
+                    int done = completed.incrementAndGet();
+                    long now = System.currentTimeMillis();
+                    long last = lastProgressUpdate.get();
+                    if (done < total && now - last >= UPLOAD_PROGRESS_INTERVAL_MILLIS && lastProgressUpdate.compareAndSet(last, now)) {
+                        progressMessage.editMessage("<@" + userId + "> 📥 Uploading to `" + displayDir + "`: " + done + "/" + total
+                                + " file(s) done, last " + uploads[slot].status().getEmoji() + " `" + targetPath + "`").queue();
+                    }
+                });
+            }
         }
 
-        // More restrictive path validation
-        if (filePath.contains("..") || (!allowNestedDirs && (filePath.contains("/") || filePath.contains("\\")))) {
+        return uploads;
+    }
+
+    private BatchUpload downloadBatchFile(Message.Attachment attachment, String targetPath, Path tempDir) {
+        // Discord strips path separators from attachment names, but a name must never lead outside the target directory
+        if (hasParentSegment(attachment.getFileName())) {
+            return BatchUpload.failed(targetPath, "invalid file name");
+        }
+
+        PathSandbox.ResolvedPath target = resolve(targetPath);
+        if (target == null) {
+            return BatchUpload.failed(targetPath, "invalid file path");
+        }
+
+        if (target.isDirectory()) {
+            return BatchUpload.failed(targetPath, "a directory with this name exists");
+        }
+
+        File targetFile = target.toFile();
+        boolean exists = target.isFile();
+
+        File tempFile = null;
+        try {
+            tempFile = Files.createTempFile(tempDir, "upload-", ".tmp").toFile();
+            String sha256 = downloadHashed(attachment, tempFile);
+
+            if (matchesExisting(target, tempFile.length(), sha256)) {
+                deleteTempFile(tempFile);
+                return new BatchUpload(targetPath, targetFile, null, null, UploadStatus.IDENTICAL, null);
+            }
+            return new BatchUpload(targetPath, targetFile, tempFile, sha256, exists ? UploadStatus.REPLACED : UploadStatus.CREATED, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            deleteTempFile(tempFile);
+            return BatchUpload.failed(targetPath, "cancelled");
+        } catch (Exception e) {
+            deleteTempFile(tempFile);
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            logger.warning("Error downloading " + itemCategory + " file " + targetPath + ": " + cause.getMessage());
+            return BatchUpload.failed(targetPath, cause.getMessage());
+        }
+    }
+
+    // Streams an attachment into the file and returns its SHA-256, so the catalog never has to read it back
+    private String downloadHashed(Message.Attachment attachment, File file) throws IOException, ExecutionException, InterruptedException {
+        MessageDigest digest = HashCatalog.newDigest();
+
+        try (InputStream in = new DigestInputStream(attachment.getProxy().download().get(), digest)) {
+            Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        metrics.getBytesReceived().add(attachment.getSize());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private void deleteTempFile(File tempFile) {
+        if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+            logger.warning("Could not delete temporary upload file: " + tempFile.getPath());
+        }
+    }
+
+    private String buildBatchSummary(BatchUpload[] uploads, String verb, String displayDir, String userId) {
+        Map<UploadStatus, Integer> counts = new EnumMap<>(UploadStatus.class);
+        for (BatchUpload upload : uploads) {
+            counts.merge(upload.status(), 1, Integer::sum);
+        }
+
+        int written = counts.getOrDefault(UploadStatus.CREATED, 0) + counts.getOrDefault(UploadStatus.REPLACED, 0);
+        int failed = counts.getOrDefault(UploadStatus.FAILED, 0);
+
+        StringBuilder summary = new StringBuilder("<@" + userId + "> " + (failed == 0 ? "✅" : "⚠️") + " " + verb + " **" + written + " of " + uploads.length + "** files to `" + displayDir + "`");
+        summary.append(" (").append(counts.getOrDefault(UploadStatus.CREATED, 0)).append(" created, ")
+                .append(counts.getOrDefault(UploadStatus.REPLACED, 0)).append(" replaced, ")
+                .append(counts.getOrDefault(UploadStatus.IDENTICAL, 0)).append(" unchanged, ")
+                .append(failed).append(" failed):\n");
+
+        // Failures are always listed, the rest only up to a point so a big archive doesn't flood the channel
+        int listed = 0;
+        for (BatchUpload upload : uploads) {
+            if (upload.status() != UploadStatus.FAILED && listed++ >= MAX_BATCH_SUMMARY_LINES) {
+                continue;
+            }
+
+            summary.append(upload.status().getEmoji()).append(" `").append(upload.targetPath()).append("`");
+            if (upload.detail() != null) {
+                summary.append(" - ").append(upload.detail());
+            }
+            summary.append("\n");
+        }
+
+        if (listed > MAX_BATCH_SUMMARY_LINES) {
+            summary.append("...and ").append(listed - MAX_BATCH_SUMMARY_LINES).append(" more\n");
+        }
+
+        if (counts.getOrDefault(UploadStatus.REPLACED, 0) > 0) {
+            summary.append("Replaced files were kept, see `").append(versionsCommand).append(" <path>`.");
+        }
+
+        return summary.toString();
+    }
+
+    // Compares sizes first, and only then the catalog hash of the existing file with the hash of the new content
+    private boolean matchesExisting(PathSandbox.ResolvedPath target, long size, String sha256) {
+        if (!target.isFile() || target.size() != size) {
+            return false;
+        }
+
+        try {
+            String existingHash = hashCatalog.getHash(target.relativePath());
+            scheduleHashCatalogSave();
+            return existingHash.equals(sha256);
+        } catch (IOException e) {
+            logger.warning("Could not compare upload with existing file " + target.relativePath() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void handleHashCommand(String[] args, MessageReceivedEvent event) {
+        MessageChannel channel = event.getChannel();
+
+        if (args.length < 2) {
+            String usage = allowNestedDirs ?
+                    "`" + hashCommand + " <path/to/filename>` or `" + hashCommand + " <filename>`" :
+                    "`" + hashCommand + " <filename>`";
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Usage: " + usage);
+            return;
+        }
+
+        // Join all arguments after the command to form the file path
+        String filePath = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+
+        if (handleFilePath(filePath, event)) {
+            return;
+        }
+
+        try {
+            PathSandbox.ResolvedPath targetFile = resolve(filePath);
+            if (targetFile == null) {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Invalid file path: `" + filePath + "`");
+                return;
+            }
+
+            if (handleFile(targetFile, event)) {
+                return;
+            }
+
+            String sha256 = hashCatalog.getHash(targetFile.relativePath());
+            scheduleHashCatalogSave();
+
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> 🔑 SHA-256 of `" + filePath + "`: `" + sha256 + "`");
+        } catch (Exception e) {
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Error hashing file: " + e.getMessage());
+            logger.severe("Error hashing " + itemCategory + " file: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private void handleDeleteCommand(String[] args, MessageReceivedEvent event) {
+        MessageChannel channel = event.getChannel();
+
+        if (args.length < 2) {
+            String usage = allowNestedDirs ?
+                    "`" + deleteCommand + " <path/to/filename>` or `" + deleteCommand + " <filename>`" :
+                    "`" + deleteCommand + " <filename>`";
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Usage: " + usage);
+            return;
+        }
+
+        // Options select many files at once instead of naming one
+        if (args[1].startsWith("--")) {
+            handleBulkDeleteCommand(args, event);
+            return;
+        }
+
+        // Join all arguments after the command to form the file path
+        String filePath = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+
+        if (handleFilePath(filePath, event)) {
+            return;
+        }
+
+        try {
+            PathSandbox.ResolvedPath targetFile = resolve(filePath);
+            if (targetFile == null) {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Invalid file path: `" + filePath + "`");
+                return;
+            }
+
+            if (handleFile(targetFile, event)) {
+                return;
+            }
+
+            // Keep the file in the trash store rather than deleting it outright
+            TrashVersion version = moveToTrash(targetFile.toFile(), "deleted");
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ✅ Successfully deleted `" + filePath + "` from " + dirFromPluginFolder + ". Restore it with `" + restoreCommand + " #" + version.id() + "`");
+            logger.info(itemCategory + " file deleted: " + filePath + " by " + event.getAuthor().getName() + " (kept as version #" + version.id() + ")");
+        } catch (Exception e) {
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Error deleting file: " + e.getMessage());
+            logger.severe("Error deleting " + itemCategory + " file: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    // Matches files from the index in one pass and asks for confirmation before anything is deleted
+    private void handleBulkDeleteCommand(String[] args, MessageReceivedEvent event) {
+        MessageChannel channel = event.getChannel();
+        String userId = event.getAuthor().getId();
+        String usage = "<@" + userId + "> ❌ Usage: `" + deleteCommand + " [--glob \"<pattern>\"] [--prefix <prefix>] [--older-than <30d|12h|45m>]`";
+        List<String> tokens = tokenize(String.join(" ", Arrays.copyOfRange(args, 1, args.length)));
+
+        if (tokens.isEmpty() || tokens.size() % 2 != 0) {
+            outbox.send(channel, usage);
+            return;
+        }
+
+        Predicate<IndexedFile> filter = file -> true;
+
+        for (int i = 0; i < tokens.size(); i += 2) {
+            String value = tokens.get(i + 1);
+
+            switch (tokens.get(i)) {
+                case "--glob" -> {
+                    PathMatcher matcher;
+                    try {
+                        matcher = FileSystems.getDefault().getPathMatcher("glob:" + value);
+                    } catch (IllegalArgumentException e) {
+                        outbox.send(channel, "<@" + userId + "> ❌ Invalid glob pattern `" + value + "`: " + e.getMessage());
+                        return;
+                    }
+
+                    // Patterns without a slash match file names anywhere, patterns with one match the whole path
+                    boolean matchPath = value.contains("/");
+                    filter = filter.and(file -> matcher.matches(Paths.get(matchPath ? file.relativePath() : file.name())));
+                }
+                case "--prefix" -> {
+                    String lowerPrefix = value.toLowerCase();
+                    filter = filter.and(file -> file.name().toLowerCase().startsWith(lowerPrefix));
+                }
+                case "--older-than" -> {
+                    long age = parseDuration(value);
+                    if (age <= 0) {
+                        outbox.send(channel, "<@" + userId + "> ❌ Invalid age `" + value + "`. Use a number followed by s, m, h, d or w, e.g. `30d`.");
+                        return;
+                    }
+
+                    long cutoff = System.currentTimeMillis() - age;
+                    filter = filter.and(file -> file.lastModified() < cutoff);
+                }
+                default -> {
+                    outbox.send(channel, usage);
+                    return;
+                }
+            }
+        }
+
+        try {
+            List<IndexedFile> matches = new ArrayList<>(index.findFiles("", filter));
+            String criteria = String.join(" ", tokens);
+
+            if (matches.isEmpty()) {
+                outbox.send(channel, "<@" + userId + "> 📖 No files match `" + criteria + "`");
+                return;
+            }
+
+            matches.sort(Comparator.comparing(IndexedFile::relativePath, String.CASE_INSENSITIVE_ORDER));
+
+            String[] paths = new String[matches.size()];
+            long totalBytes = 0;
+            for (int i = 0; i < paths.length; i++) {
+                paths[i] = matches.get(i).relativePath();
+                totalBytes += matches.get(i).size();
+            }
+
+            String deleteId = UUID.randomUUID().toString().substring(0, 8);
+            if (!pendingDeletes.put(deleteId, new PendingDelete(userId, paths, criteria))) {
+                outbox.send(channel, "<@" + userId + "> ❌ Too many files match `" + criteria + "` (" + paths.length + ") to confirm at once. Please narrow it down.");
+                return;
+            }
+
+            StringBuilder message = new StringBuilder("<@" + userId + "> 🗑️ **" + paths.length + " file(s)** (" + formatSize(totalBytes) + ") match `" + criteria + "`:\n");
+            for (int i = 0; i < Math.min(paths.length, MAX_BULK_DELETE_PREVIEW); i++) {
+                message.append("📄 `").append(paths[i]).append("`\n");
+            }
+            if (paths.length > MAX_BULK_DELETE_PREVIEW) {
+                message.append("...and ").append(paths.length - MAX_BULK_DELETE_PREVIEW).append(" more\n");
+            }
+            message.append("\nDeleted files are kept as versions and can be restored. Confirm within 5 minutes.");
+
+            String content = message.length() > Message.MAX_CONTENT_LENGTH ? message.substring(0, Message.MAX_CONTENT_LENGTH - 1) + "…" : message.toString();
+            outbox.sendSeparately(channel, new MessageCreateBuilder().setContent(content)
+                    .setActionRow(Button.danger(buttonId("bulkdelete", deleteId), "🗑️ Delete " + paths.length + " file(s)"),
+                            Button.secondary(buttonId("cancelbulkdelete", deleteId), "Cancel"))
+                    .build());
+        } catch (Exception e) {
+            outbox.send(channel, "<@" + userId + "> ❌ Error matching files: " + e.getMessage());
+            logger.severe("Error matching " + itemCategory + " files for bulk delete: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private void handleBulkDeleteButton(ButtonInteractionEvent event, Member member, String deleteId, boolean confirmed) {
+        PendingDelete pending = pendingDeletes.get(deleteId);
+
+        if (pending == null) {
+            event.reply("<@" + member.getId() + "> ❌ This delete has expired. Please run the command again.").queue();
+            return;
+        }
+
+        if (!pending.userId().equals(member.getId())) {
+            event.reply("<@" + member.getId() + "> ❌ Only the user who asked for this delete can confirm it.").queue();
+            return;
+        }
+
+        // Taking it out of the cache makes a second click a no-op
+        if (pendingDeletes.remove(deleteId) == null) {
+            event.reply("<@" + member.getId() + "> ❌ This delete has expired. Please run the command again.").queue();
+            return;
+        }
+
+        if (!confirmed) {
+            event.editComponents().queue();
+            event.getHook().sendMessage("<@" + member.getId() + "> ❎ Delete of files matching `" + pending.criteria() + "` cancelled.").queue();
+            return;
+        }
+
+        event.editComponents().queue();
+        InteractionHook hook = event.getHook();
+
+        CommandExecutionService.Submission submission = plugin.getCommandExecutionService().submit(member.getId(), timed("bulkdelete", () -> performBulkDelete(pending, member, hook)));
+
+        if (submission != CommandExecutionService.Submission.ACCEPTED) {
+            // Put it back so the button can be pressed again once the bot is less busy
+            String retry = pendingDeletes.put(deleteId, pending) ? "" : " Please run the command again.";
+            hook.sendMessage("<@" + member.getId() + "> " + getBusyMessage(submission) + retry).queue();
+        }
+    }
+
+    private void performBulkDelete(PendingDelete pending, Member member, InteractionHook hook) {
+        int deleted = 0;
+        int missing = 0;
+        long deletedBytes = 0;
+        int firstVersion = -1;
+        int lastVersion = -1;
+        List<String> failures = new ArrayList<>();
+
+        for (String relativePath : pending.paths()) {
+            // Files may have changed since they were matched
+            PathSandbox.ResolvedPath target = resolve(relativePath);
+            if (target == null || !target.isFile()) {
+                missing++;
+                continue;
+            }
+
+            try {
+                File file = target.toFile();
+                long size = target.size();
+                TrashVersion version = moveToTrash(file, "bulk deleted");
+
+                deleted++;
+                deletedBytes += size;
+                firstVersion = firstVersion < 0 ? version.id() : firstVersion;
+                lastVersion = version.id();
+            } catch (IOException e) {
+                failures.add(relativePath + ": " + e.getMessage());
+                logger.warning("Failed to delete " + itemCategory + " file " + relativePath + ": " + e.getMessage());
+            }
+        }
+
+        StringBuilder summary = new StringBuilder("<@" + member.getId() + "> " + (failures.isEmpty() ? "✅" : "⚠️") + " Deleted **" + deleted + " file(s)** ("
+                + formatSize(deletedBytes) + ") matching `" + pending.criteria() + "`.");
+
+        if (deleted > 0) {
+            summary.append(" They were kept as versions `#").append(firstVersion).append("`");
+            if (lastVersion != firstVersion) {
+                summary.append(" to `#").append(lastVersion).append("`");
+            }
+            summary.append(", see `").append(versionsCommand).append("`.");
+        }
+
+        if (missing > 0) {
+            summary.append("\n").append(missing).append(" file(s) were already gone.");
+        }
+
+        if (!failures.isEmpty()) {
+            summary.append("\n❌ Failed to delete ").append(failures.size()).append(" file(s):\n");
+            for (String failure : failures.subList(0, Math.min(failures.size(), MAX_BATCH_SUMMARY_LINES))) {
+                summary.append("`").append(failure).append("`\n");
+            }
+        }
+
+        forEachChunk(summary, 1900, chunk -> hook.sendMessage(chunk).queue());
+
+        logger.info("Bulk deleted " + deleted + " " + itemCategory + " file(s) matching '" + pending.criteria() + "' by " + member.getEffectiveName());
+    }
+
+    // Splits on spaces, keeping "quoted parts" together so patterns with spaces survive
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        boolean hasToken = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            if (c == '"') {
+                quoted = !quoted;
+                hasToken = true;
+            } else if (c == ' ' && !quoted) {
+                if (hasToken) {
+                    tokens.add(current.toString());
+                    current.setLength(0);
+                    hasToken = false;
+                }
+            } else {
+                current.append(c);
+                hasToken = true;
+            }
+        }
+
+        if (hasToken) {
+            tokens.add(current.toString());
+        }
+
+        return tokens;
+    }
+
+    // Parses ages like "30d", "12h" or "45m" into milliseconds, or -1 if the format is wrong
+    private static long parseDuration(String value) {
+        Matcher matcher = DURATION_PATTERN.matcher(value.toLowerCase());
+
+        if (!matcher.matches()) {
+            return -1;
+        }
+
+        long amount = Long.parseLong(matcher.group(1));
+        return switch (matcher.group(2)) {
+            case "s" -> Duration.ofSeconds(amount).toMillis();
+            case "m" -> Duration.ofMinutes(amount).toMillis();
+            case "h" -> Duration.ofHours(amount).toMillis();
+            case "d" -> Duration.ofDays(amount).toMillis();
+            default -> Duration.ofDays(amount * 7).toMillis();
+        };
+    }
+
+    // Moves a file into the trash store instead of deleting it, so it can be restored later
+    private TrashVersion moveToTrash(File file, String reason) throws IOException {
+        String relativePath = index.relativize(file.toPath());
+        TrashVersion version = trashStore.store(file.toPath(), relativePath, reason);
+
+        hashCatalog.remove(relativePath);
+        scheduleHashCatalogSave();
+        index.refresh(file.toPath());
+        scheduleTrashMaintenance();
+        return version;
+    }
+
+    private void recordHash(String relativePath, String sha256) {
+        try {
+            hashCatalog.put(relativePath, sha256);
+            scheduleHashCatalogSave();
+        } catch (IOException e) {
+            // Only costs a re-read the next time the hash is needed
+            logger.warning("Could not record hash of " + relativePath + ": " + e.getMessage());
+        }
+    }
+
+    // Writes the catalog once things have been quiet for a while instead of after every change; shutdown saves the rest
+    private void scheduleHashCatalogSave() {
+        if (!hashCatalogSaveQueued.compareAndSet(false, true)) {
+            return;
+        }
+
+        Thread.ofVirtual().name("DiscordFileManager-HashSave-" + commandPrefix).start(() -> {
+            try {
+                Thread.sleep(HASH_CATALOG_SAVE_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            hashCatalogSaveQueued.set(false);
+            saveHashCatalog();
+        });
+    }
+
+    // Files deleted or renamed outside the bot only show up in the index, so their entries are dropped here
+    private void saveHashCatalog() {
+        if (index.getReady().isDone()) {
+            hashCatalog.retainAll(relativePath -> index.get(relativePath) != null);
+        }
+        hashCatalog.save();
+    }
+
+    // Compression and pruning run on the zip threads; requests made while one is already queued share it
+    private void scheduleTrashMaintenance() {
+        if (!trashMaintenanceQueued.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            plugin.getZipExecutor().execute(() -> {
+                trashMaintenanceQueued.set(false);
+                trashStore.maintain();
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down, the store is maintained again on the next start
+            trashMaintenanceQueued.set(false);
+        }
+    }
+
+    private void handleVersionsCommand(String[] args, MessageReceivedEvent event) {
+        MessageChannel channel = event.getChannel();
+
+        try {
+            List<TrashVersion> versions;
+            StringBuilder message = new StringBuilder("<@" + event.getAuthor().getId() + ">\n");
+
+            if (args.length < 2) {
+                versions = trashStore.getRecent(MAX_LISTED_VERSIONS);
+                message.append("### 🗃️ Recently kept ").append(itemCategory.toLowerCase()).append(" versions:\n");
+            } else {
+                String filePath = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+
+                if (handleFilePath(filePath, event)) {
+                    return;
+                }
+
+                PathSandbox.ResolvedPath targetFile = resolve(filePath);
+                if (targetFile == null) {
+                    outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Invalid file path: `" + filePath + "`");
+                    return;
+                }
+
+                versions = trashStore.getVersions(targetFile.relativePath());
+                message.append("### 🗃️ Kept versions of `").append(filePath).append("`:\n");
+            }
+
+            if (versions.isEmpty()) {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> 📖 No kept versions found.");
+                return;
+            }
+
+            for (TrashVersion version : versions.subList(0, Math.min(versions.size(), MAX_LISTED_VERSIONS))) {
+                message.append("`#").append(version.id()).append("` `").append(version.relativePath()).append("` - ")
+                        .append(version.reason()).append(" <t:").append(version.timestamp() / 1000).append(":R>, ")
+                        .append(formatSize(version.size())).append("\n");
+            }
+
+            message.append("\nRestore one with `").append(restoreCommand).append(" #<version>`");
+
+            forEachChunk(message, 1900, chunk -> outbox.send(channel, chunk));
+        } catch (Exception e) {
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ An error occurred while listing kept versions.");
+            logger.severe("Error listing " + itemCategory + " versions: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private void handleRestoreCommand(String[] args, MessageReceivedEvent event) {
+        MessageChannel channel = event.getChannel();
+
+        if (args.length < 2) {
+            String usage = allowNestedDirs ?
+                    "`" + restoreCommand + " #<version>` or `" + restoreCommand + " <path/to/filename>` (latest version)" :
+                    "`" + restoreCommand + " #<version>` or `" + restoreCommand + " <filename>` (latest version)";
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Usage: " + usage);
+            return;
+        }
+
+        String argument = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+
+        try {
+            TrashVersion version;
+
+            if (argument.startsWith("#")) {
+                try {
+                    version = trashStore.get(Integer.parseInt(argument.substring(1)));
+                } catch (NumberFormatException e) {
+                    version = null;
+                }
+
+                if (version == null) {
+                    outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Version `" + argument + "` not found. See `" + versionsCommand + "`.");
+                    return;
+                }
+            } else {
+                if (handleFilePath(argument, event)) {
+                    return;
+                }
+
+                PathSandbox.ResolvedPath requestedFile = resolve(argument);
+                if (requestedFile == null) {
+                    outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Invalid file path: `" + argument + "`");
+                    return;
+                }
+
+                List<TrashVersion> versions = trashStore.getVersions(requestedFile.relativePath());
+                if (versions.isEmpty()) {
+                    outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ No kept versions of `" + argument + "`.");
+                    return;
+                }
+                version = versions.getFirst();
+            }
+
+            // Stored paths were checked when they were stored, but the sandbox may have changed since
+            PathSandbox.ResolvedPath target = resolve(version.relativePath());
+            if (target == null) {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Invalid file path: `" + version.relativePath() + "`");
+                return;
+            }
+
+            if (target.isDirectory()) {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ `" + version.relativePath() + "` is now a directory.");
+                return;
+            }
+
+            File targetFile = target.toFile();
+            String keptVersion = "";
+            if (target.isFile()) {
+                if (target.size() == version.size() && hashCatalog.getHash(version.relativePath()).equals(version.sha256())) {
+                    outbox.send(channel, "<@" + event.getAuthor().getId() + "> ✅ `" + version.relativePath() + "` already matches version `#" + version.id() + "`.");
+                    return;
+                }
+
+                TrashVersion current = moveToTrash(targetFile, "replaced by a restore");
+                keptVersion = " The current file was kept as `#" + current.id() + "`.";
+            }
+
+            trashStore.restore(version, targetFile.toPath());
+            index.refresh(targetFile.toPath());
+            recordHash(version.relativePath(), version.sha256());
+
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ♻️ Restored `" + version.relativePath() + "` from version `#" + version.id() + "` (" + version.reason() + " <t:" + version.timestamp() / 1000 + ":R>)." + keptVersion);
+            logger.info(itemCategory + " file restored: " + version.relativePath() + " from version #" + version.id() + " by " + event.getAuthor().getName());
+        } catch (Exception e) {
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Error restoring file: " + e.getMessage());
+            logger.severe("Error restoring " + itemCategory + " file: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private Path getUploadTempDir() throws IOException {
+        Path tempDir = new File(plugin.getDataFolder(), "uploads").toPath();
+        Files.createDirectories(tempDir);
+        return tempDir;
+    }
+
+    private void handleMkdirCommand(String[] args, MessageReceivedEvent event) {
+        MessageChannel channel = event.getChannel();
+
+        if (args.length < 2) {
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Usage: `" + mkdirCommand + " <directory/path>`");
+            return;
+        }
+
+        // Join all arguments after the command to form the directory path
+        String dirPath = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+
+        if (handleDirectoryPath(dirPath, event)) {
+            return;
+        }
+
+        try {
+            PathSandbox.ResolvedPath target = resolve(dirPath);
+            if (target == null) {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Invalid directory path: `" + dirPath + "`");
+                return;
+            }
+
+            if (target.exists()) {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Directory `" + dirPath + "` already exists.");
+                return;
+            }
+
+            File targetDir = target.toFile();
+            if (targetDir.mkdirs()) {
+                index.refresh(targetDir.toPath());
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ✅ Successfully created directory `" + dirPath + "`");
+                logger.info("Directory created: " + dirPath + " by " + event.getAuthor().getName());
+            } else {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Failed to create directory `" + dirPath + "`");
+                logger.warning("Failed to create directory: " + dirPath);
+            }
+        } catch (Exception e) {
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Error creating directory: " + e.getMessage());
+            logger.severe("Error creating directory: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private void handleRmdirCommand(String[] args, MessageReceivedEvent event) {
+        MessageChannel channel = event.getChannel();
+        String usage = "<@" + event.getAuthor().getId() + "> ❌ Usage: `" + rmdirCommand + " [--recursive] [--dry-run] <directory/path>`";
+
+        // Leading options; --dry-run on its own previews a recursive removal
+        boolean recursive = false;
+        boolean dryRun = false;
+        int pathStart = 1;
+
+        while (pathStart < args.length && args[pathStart].startsWith("--")) {
+            switch (args[pathStart]) {
+                case "--recursive" -> recursive = true;
+                case "--dry-run" -> dryRun = true;
+                default -> {
+                    outbox.send(channel, usage);
+                    return;
+                }
+            }
+            pathStart++;
+        }
+
+        if (pathStart >= args.length) {
+            outbox.send(channel, usage);
+            return;
+        }
+
+        // Join all remaining arguments to form the directory path
+        String dirPath = String.join(" ", Arrays.copyOfRange(args, pathStart, args.length));
+
+        if (handleDirectoryPath(dirPath, event)) {
+            return;
+        }
+
+        try {
+            PathSandbox.ResolvedPath target = resolve(dirPath);
+            if (target == null) {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Invalid directory path: `" + dirPath + "`");
+                return;
+            }
+
+            if (!target.exists()) {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Directory `" + dirPath + "` does not exist.");
+                return;
+            }
+
+            if (!target.isDirectory()) {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ `" + dirPath + "` is not a directory.");
+                return;
+            }
+
+            File targetDir = target.toFile();
+            if (target.relativePath().isEmpty()) {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ The root " + itemCategory.toLowerCase() + " directory cannot be removed.");
+                return;
+            }
+
+            if (recursive || dryRun) {
+                removeDirectoryTree(targetDir, dirPath, dryRun, event);
+                return;
+            }
+
+            // Check if directory is empty
+            File[] files = targetDir.listFiles();
+            if (files != null && files.length > 0) {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Directory `" + dirPath + "` is not empty. Use `" + rmdirCommand + " --recursive " + dirPath + "` to remove it with everything inside.");
+                return;
+            }
+
+            if (targetDir.delete()) {
+                index.refresh(targetDir.toPath());
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ✅ Successfully deleted directory `" + dirPath + "`");
+                logger.info("Directory deleted: " + dirPath + " by " + event.getAuthor().getName());
+            } else {
+                outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Failed to delete directory `" + dirPath + "`");
+                logger.warning("Failed to delete directory: " + dirPath);
+            }
+        } catch (Exception e) {
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Error deleting directory: " + e.getMessage());
+            logger.severe("Error deleting directory: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    // Walks the subtree once: files go to the trash store as they are visited and directories are deleted on the
+    // way back up, so everything is removed bottom-up. A dry run only counts.
+    private void removeDirectoryTree(File targetDir, String dirPath, boolean dryRun, MessageReceivedEvent event) throws IOException {
+        MessageChannel channel = event.getChannel();
+        String userId = event.getAuthor().getId();
+        TreeRemoval removal = new TreeRemoval();
+
+        Files.walkFileTree(targetDir.toPath(), new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                String relativePath = index.relativize(file);
+
+                if (dryRun) {
+                    removal.addFile(relativePath, attributes.size(), -1);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                try {
+                    if (attributes.isRegularFile()) {
+                        removal.addFile(relativePath, attributes.size(), moveToTrash(file.toFile(), "removed with its directory").id());
+                    } else {
+                        // Links and other special files hold no content worth keeping
+                        Files.delete(file);
+                        removal.addFile(relativePath, 0, -1);
+                    }
+                } catch (IOException e) {
+                    removal.failures.add(relativePath + ": " + e.getMessage());
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                removal.failures.add(index.relativize(file) + ": " + e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                removal.directories++;
+
+                if (!dryRun) {
+                    try {
+                        Files.delete(dir);
+                    } catch (IOException deleteError) {
+                        // Already reported through the file that couldn't be removed
+                        if (!(deleteError instanceof DirectoryNotEmptyException)) {
+                            removal.failures.add(index.relativize(dir) + "/: " + deleteError.getMessage());
+                        }
+                    }
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        if (!dryRun) {
+            index.refresh(targetDir.toPath());
+        }
+
+        StringBuilder message = new StringBuilder("<@" + userId + "> ");
+
+        if (dryRun) {
+            message.append("🔎 `").append(dirPath).append("` contains **").append(removal.files).append(" file(s)** (")
+                    .append(formatSize(removal.bytes)).append(") in ").append(removal.directories).append(" director(ies). Nothing was deleted.\n");
+            for (String relativePath : removal.preview) {
+                message.append("📄 `").append(relativePath).append("`\n");
+            }
+            if (removal.files > removal.preview.size()) {
+                message.append("...and ").append(removal.files - removal.preview.size()).append(" more\n");
+            }
+            message.append("Run `").append(rmdirCommand).append(" --recursive ").append(dirPath).append("` to remove it.");
+        } else {
+            message.append(removal.failures.isEmpty() ? "✅" : "⚠️").append(" Removed `").append(dirPath).append("`: **")
+                    .append(removal.files).append(" file(s)** (").append(formatSize(removal.bytes)).append(") in ")
+                    .append(removal.directories).append(" director(ies).");
+            if (removal.firstVersion >= 0) {
+                message.append(" Files were kept as versions `#").append(removal.firstVersion).append("`");
+                if (removal.lastVersion != removal.firstVersion) {
+                    message.append(" to `#").append(removal.lastVersion).append("`");
+                }
+                message.append(", see `").append(versionsCommand).append("`.");
+            }
+        }
+
+        if (!removal.failures.isEmpty()) {
+            message.append("\n❌ Could not remove ").append(removal.failures.size()).append(" item(s):\n");
+            for (String failure : removal.failures.subList(0, Math.min(removal.failures.size(), MAX_BATCH_SUMMARY_LINES))) {
+                message.append("`").append(failure).append("`\n");
+            }
+        }
+
+        forEachChunk(message, 1900, chunk -> outbox.send(channel, chunk));
+
+        if (!dryRun) {
+            logger.info("Directory removed recursively: " + dirPath + " (" + removal.files + " files, " + removal.bytes + " bytes) by " + event.getAuthor().getName());
+        }
+    }
+
+    // Running totals of a recursive directory removal
+    private static final class TreeRemoval {
+        private final List<String> preview = new ArrayList<>();
+        private final List<String> failures = new ArrayList<>();
+        private int files = 0;
+        private int directories = 0;
+        private long bytes = 0;
+        private int firstVersion = -1;
+        private int lastVersion = -1;
+
+        private void addFile(String relativePath, long size, int version) {
+            files++;
+            bytes += size;
+
+            if (preview.size() < MAX_BULK_DELETE_PREVIEW) {
+                preview.add(relativePath);
+            }
+
+            if (version >= 0) {
+                firstVersion = firstVersion < 0 ? version : firstVersion;
+                lastVersion = version;
+            }
+        }
+    }
+
+    // Null (after logging) if the path can't be resolved or leads outside the managed directory
+    private PathSandbox.ResolvedPath resolve(String relativePath) {
+        try {
+            return sandbox.resolve(relativePath);
+        } catch (IOException | InvalidPathException e) {
+            logger.warning("Error resolving path: " + relativePath + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Getter
+    private enum UploadStatus {
+        CREATED("✅"),
+        REPLACED("♻️"),
+        IDENTICAL("⏭️"),
+        FAILED("❌");
+
+        private final String emoji;
+
+        UploadStatus(String emoji) {
+            this.emoji = emoji;
+        }
+    }
+
+    private record PendingDelete(String userId, String[] paths, String criteria) {
+    }
+
+    // One file of a multi-file upload; the temp file holds the download until it is moved into place, sha256 is its hash
+    private record BatchUpload(String targetPath, File targetFile, File tempFile, String sha256, UploadStatus status, String detail) {
+        static BatchUpload failed(String targetPath, String error) {
+            return new BatchUpload(targetPath, null, null, null, UploadStatus.FAILED, error);
+        }
+
+        BatchUpload fail(String error) {
+            return new BatchUpload(targetPath, targetFile, tempFile, sha256, UploadStatus.FAILED, error);
+        }
+
+        BatchUpload withDetail(String detail) {
+            return new BatchUpload(targetPath, targetFile, tempFile, sha256, status, detail);
+        }
+    }
+
+    private String getParentPath(String path) {
+        Path pathObj = Paths.get(path);
+        Path parent = pathObj.getParent();
+        return parent != null ? parent.toString().replace("\\", "/") : "";
+    }
+
+    private boolean handleFilePath(String filePath, MessageReceivedEvent event) {
+        MessageChannel channel = event.getChannel();
+
+        if (filePath.trim().isEmpty()) {
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ File path cannot be empty.");
+            return true;
+        }
+
+        // More restrictive path validation
+        if (hasParentSegment(filePath) || (!allowNestedDirs && (filePath.contains("/") || filePath.contains("\\")))) {
             String message = allowNestedDirs ?
-                    "❌ Invalid file path `" + filePath + "`. Path cannot contain '..' sequences." :
-                    "❌ Invalid filename `" + filePath + "`. Filename cannot contain path separators or '..' sequences.";
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> " + message).queue();
+                    "❌ Invalid file path `" + filePath + "`. Path cannot contain '..' segments." :
+                    "❌ Invalid filename `" + filePath + "`. Filename cannot contain path separators or '..' segments.";
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> " + message);
             return true;
         }
 
@@ -744,89 +2027,83 @@ public class FileManager extends ListenerAdapter {
         MessageChannel channel = event.getChannel();
 
         if (dirPath.trim().isEmpty()) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Directory path cannot be empty.").queue();
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Directory path cannot be empty.");
             return true;
         }
 
         // Path validation for directories
-        if (dirPath.contains("..")) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Invalid directory path `" + dirPath + "`. Path cannot contain '..' sequences.").queue();
+        if (hasParentSegment(dirPath)) {
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Invalid directory path `" + dirPath + "`. Path cannot contain '..' segments.");
             return true;
         }
 
         return false;
     }
 
+    // Only a whole ".." segment climbs out of a directory; names like castle..v2.schem are fine, and the sandbox keeps
+    // every resolved path inside the root regardless
+    private static boolean hasParentSegment(String path) {
+        for (String segment : path.split("[/\\\\]")) {
+            if (segment.equals("..")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private boolean handleFilename(String filename, MessageReceivedEvent event) {
         return handleFilePath(filename, event);
     }
 
-    private boolean handleFile(File file, MessageReceivedEvent event) throws IOException {
+    // The sandbox already kept the path inside the managed directory, this only looks at what was found there
+    private boolean handleFile(PathSandbox.ResolvedPath file, MessageReceivedEvent event) {
         MessageChannel channel = event.getChannel();
 
         if (!file.exists()) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ File not found: `" + file.getName() + "`").queue();
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ File not found: `" + file.name() + "`");
             return true;
         }
 
         if (!file.isFile()) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ `" + file.getName() + "` is not a file.").queue();
-            return true;
-        }
-
-        // Ensure file is within the allowed directory
-        if (!file.getCanonicalPath().startsWith(rootDir.getCanonicalPath())) {
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Invalid file path.").queue();
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ `" + file.name() + "` is not a file.");
             return true;
         }
 
         return false;
     }
 
-    private void uploadFile(File file, MessageReceivedEvent event) {
-        try {
-            byte[] data = Files.readAllBytes(file.toPath());
-            uploadFile(data, file.getName(), event);
-        } catch (java.nio.file.AccessDeniedException e) {
-            MessageChannel channel = event.getChannel();
-            logger.warning("Access denied when trying to read file: " + file.getPath() + " - " + e.getMessage());
-
-            if (file.isDirectory()) {
-                String suggestion = allowNestedDirs ?
-                        "To upload a file to this directory, specify the full path including filename." :
-                        "Directories cannot be uploaded. Please specify a file.";
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ `" + file.getName() + "` is a directory. " + suggestion).queue();
-            } else {
-                channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Access denied when reading file `" + file.getName() + "`. The file may be in use by another process or you may not have permission to read it.").queue();
-            }
-        } catch (IOException e) {
-            MessageChannel channel = event.getChannel();
-            logger.warning("IO error when trying to read file: " + file.getPath() + " - " + e.getMessage());
-            channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Error reading file `" + file.getName() + "`: " + e.getMessage()).queue();
-        }
-    }
-
-    private void uploadFile(byte[] data, String fileName, MessageReceivedEvent event) {
+    // Sends a file to the channel straight from disk; success or failure is reported once the send has finished
+    private void uploadFile(PathSandbox.ResolvedPath target, MessageReceivedEvent event) {
         MessageChannel channel = event.getChannel();
+        File file = target.toFile();
 
-        // Check file size (Discord 8MB limit)
-        long maxSizeBytes = 8 * 1024 * 1024;
+        // Check file size against the configured Discord upload limit, using the attributes read while resolving
+        long maxSizeBytes = configManager.getUploadLimitBytes();
+        if (target.size() > maxSizeBytes) {
+            outbox.send(channel, String.format("@%s ❌ The file %s is too large (%s). Discord limit is %s.", event.getAuthor().getEffectiveName(), file.getName(), formatSize(target.size()), formatSize(maxSizeBytes)));
+            return;
+        }
 
-        if (data.length > maxSizeBytes) {
-            double fileSizeInMB = data.length / (1024.0 * 1024.0);
-            channel.sendMessage(String.format("@%s ❌ The file %s is too large (%.2f MB). Discord limit is 8MB.", event.getAuthor().getEffectiveName(), fileName, fileSizeInMB)).queue();
+        FileUpload fileUpload;
+        try {
+            fileUpload = FileUpload.fromData(file, file.getName());
+        } catch (UncheckedIOException e) {
+            logger.warning("Access denied when trying to read file: " + file.getPath() + " - " + e.getMessage());
+            outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Access denied when reading file `" + file.getName() + "`. The file may be in use by another process or you may not have permission to read it.");
             return;
         }
 
-        channel.sendMessage("<@" + event.getAuthor().getId() + ">")
-                .addFiles(FileUpload.fromData(data, fileName))
-                .queue(success -> {
-                }, throwable -> {
-                    channel.sendMessage("<@" + event.getAuthor().getId() + "> ❌ Failed to upload file. Error: " + throwable.getMessage()).queue();
-                    logger.warning("Failed to upload file: " + throwable.getMessage());
-                    throwable.printStackTrace();
+        // Files read back to back may share a message, as long as they fit the upload limit together. The command doesn't
+        // wait for the send, so the outbox can still batch the next read into the same message
+        outbox.sendFiles(channel, "<@" + event.getAuthor().getId() + ">", List.of(fileUpload), target.size())
+                .whenComplete((sent, throwable) -> {
+                    if (throwable != null) {
+                        outbox.send(channel, "<@" + event.getAuthor().getId() + "> ❌ Failed to upload file. Error: " + throwable.getMessage());
+                        logger.warning("Failed to upload file: " + throwable.getMessage());
+                        throwable.printStackTrace();
+                    } else {
+                        logger.info("Uploaded file to discord: " + file.getName());
+                    }
                 });
-
-        logger.info("Uploaded file to discord: " + fileName);
     }
 }
\ No newline at end of file
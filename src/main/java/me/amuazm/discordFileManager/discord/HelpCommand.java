@@ -0,0 +1,110 @@
+package me.amuazm.discordFileManager.discord;
+
+import me.amuazm.discordFileManager.utils.ConfigManager;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+
+import java.util.Map;
+
+import static me.amuazm.discordFileManager.utils.Utils.forEachChunk;
+
+public class HelpCommand {
+    public static final String[] COMMANDS = {"$help", "$help2", "$help-dfm"};
+
+    private final ConfigManager configManager;
+    private final MessageOutbox outbox;
+
+    public HelpCommand(ConfigManager configManager, MessageOutbox outbox) {
+        this.configManager = configManager;
+        this.outbox = outbox;
+    }
+
+    public void registerCommands(Map<String, CommandHandler> commands) {
+        for (String command : COMMANDS) {
+            commands.put(command, this::handleHelpCommand);
+        }
+    }
+
+    private void handleHelpCommand(String[] args, MessageReceivedEvent event) {
+        MessageChannel channel = event.getChannel();
+
+        // The help text is rendered once per config load
+        String helpMessage = "<@" + event.getAuthor().getId() + ">\n" + configManager.getSnapshot().helpText();
+
+        // Split message if it's too long
+        forEachChunk(helpMessage, 1900, chunk -> outbox.send(channel, chunk));
+    }
+
+    public static String renderHelpText(Map<String, ConfigManager.FileManagerConfig> fileManagers) {
+        StringBuilder helpMessage = new StringBuilder();
+        helpMessage.append("### 📖 Help\n");
+        helpMessage.append("`$help` | `$help2` | `$help-dfm` - Show this message.\n");
+
+        if (fileManagers.isEmpty()) {
+            helpMessage.append("No file managers are currently configured.");
+        } else {
+            for (Map.Entry<String, ConfigManager.FileManagerConfig> entry : fileManagers.entrySet()) {
+                String prefix = entry.getKey();
+                ConfigManager.FileManagerConfig config = entry.getValue();
+                boolean allowNestedDirs = config.isAllowNestedDirs();
+
+                helpMessage.append("\n### ").append(config.getEmoji()).append(" ").append(config.getItemCategory()).append(" Files");
+                if (allowNestedDirs) {
+                    helpMessage.append(" 📁");
+                }
+                helpMessage.append("\n");
+
+                // Basic commands
+                if (allowNestedDirs) {
+                    helpMessage.append("`$").append(prefix).append("-list [--by size|mtime|name] [directory/path]` - List files/directories with their size and last change. Use without path to list root directory.\n");
+                    helpMessage.append("`$").append(prefix).append("-search <words...>` - Search for files in the ").append(config.getItemCategory().toLowerCase()).append(" directory whose path contains every word. Close matches are shown if nothing matches exactly.\n");
+                    helpMessage.append("`$").append(prefix).append("-grep <regex> [directory/path]` - Find lines matching a regex inside files, shown as `path:line: snippet`. Quote the regex if it contains spaces.\n");
+                    helpMessage.append("`$").append(prefix).append("-read <path/to/filename>` - Get a file from any directory.\n");
+                    helpMessage.append("`$").append(prefix).append("-upload [path/to/filename]` - Upload a file. Optionally specify directory path. With several attachments the path is the directory they all go into.\n");
+                    helpMessage.append("`$").append(prefix).append("-upload --extract [path/to/dir]` - Unpack an attached .zip or .tar.gz into a directory.\n");
+                    helpMessage.append("`$").append(prefix).append("-delete <path/to/filename>` - Delete a file. It is kept as a version that can be restored.\n");
+                    helpMessage.append("`$").append(prefix).append("-delete --glob \"<pattern>\" | --prefix <prefix> | --older-than <30d>` - Delete all matching files after confirmation. Options can be combined.\n");
+                    helpMessage.append("`$").append(prefix).append("-hash <path/to/filename>` - Show the SHA-256 hash of a file.\n");
+                    helpMessage.append("`$").append(prefix).append("-versions [path/to/filename]` - List kept versions of deleted and replaced files.\n");
+                    helpMessage.append("`$").append(prefix).append("-restore <#version | path/to/filename>` - Restore a kept version, or the latest one of a file.\n");
+                } else {
+                    helpMessage.append("`$").append(prefix).append("-list [--by size|mtime|name]` - List files in the ").append(config.getItemCategory().toLowerCase()).append(" directory with their size and last change.\n");
+                    helpMessage.append("`$").append(prefix).append("-search <words...>` - Search for files in the ").append(config.getItemCategory().toLowerCase()).append(" directory whose path contains every word. Close matches are shown if nothing matches exactly.\n");
+                    helpMessage.append("`$").append(prefix).append("-grep <regex>` - Find lines matching a regex inside ").append(config.getItemCategory().toLowerCase()).append(" files, shown as `path:line: snippet`.\n");
+                    helpMessage.append("`$").append(prefix).append("-read <filename>` - Get a ").append(config.getItemCategory().toLowerCase()).append(" file. Uploads the file in the channel.\n");
+                    helpMessage.append("`$").append(prefix).append("-upload` - Upload a ").append(config.getItemCategory().toLowerCase()).append(". Requires one or more attachments. Replaced files are kept as versions.\n");
+                    helpMessage.append("`$").append(prefix).append("-upload --extract` - Unpack an attached .zip or .tar.gz archive of ").append(config.getItemCategory().toLowerCase()).append(" files.\n");
+                    helpMessage.append("`$").append(prefix).append("-delete <filename>` - Delete a ").append(config.getItemCategory().toLowerCase()).append(" file. It is kept as a version that can be restored.\n");
+                    helpMessage.append("`$").append(prefix).append("-delete --glob \"<pattern>\" | --prefix <prefix> | --older-than <30d>` - Delete all matching ").append(config.getItemCategory().toLowerCase()).append(" files after confirmation.\n");
+                    helpMessage.append("`$").append(prefix).append("-hash <filename>` - Show the SHA-256 hash of a ").append(config.getItemCategory().toLowerCase()).append(" file.\n");
+                    helpMessage.append("`$").append(prefix).append("-versions [filename]` - List kept versions of deleted and replaced files.\n");
+                    helpMessage.append("`$").append(prefix).append("-restore <#version | filename>` - Restore a kept version, or the latest one of a file.\n");
+                }
+
+                // Directory management commands (only show if nested dirs are enabled)
+                if (allowNestedDirs) {
+                    helpMessage.append("`$").append(prefix).append("-mkdir <directory/path>` - Create a new directory.\n");
+                    helpMessage.append("`$").append(prefix).append("-rmdir [--recursive] [--dry-run] <directory/path>` - Remove a directory. `--recursive` also removes everything inside (kept as versions), `--dry-run` only shows what would go.\n");
+                }
+            }
+        }
+
+        // Add examples section if any file manager has nested directories enabled
+        boolean hasNestedDirs = fileManagers.values().stream().anyMatch(ConfigManager.FileManagerConfig::isAllowNestedDirs);
+
+        if (hasNestedDirs) {
+            helpMessage.append("\n### 📁 Directory Navigation Examples:\n");
+            helpMessage.append("`$q-list                         # List root directory`\n");
+            helpMessage.append("`$q-list Ancestral               # List 'Ancestral' folder`\n");
+            helpMessage.append("`$q-list --by mtime Ancestral    # Most recently changed first`\n");
+            helpMessage.append("`$q-read Ancestral/quest.yml     # Get file from subfolder`\n");
+            helpMessage.append("`$q-grep npc_guard Ancestral     # Lines mentioning npc_guard`\n");
+            helpMessage.append("`$q-upload Ancestral/new.yml     # Upload to specific path`\n");
+            helpMessage.append("`$q-upload Ancestral/            # Upload with original name`\n");
+            helpMessage.append("`$q-mkdir Tower                  # Create new directory`\n");
+            helpMessage.append("`$q-delete Ancestral/unused.yml  # Delete from subfolder`\n");
+        }
+
+        return helpMessage.toString();
+    }
+}
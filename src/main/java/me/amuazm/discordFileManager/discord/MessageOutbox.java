@@ -0,0 +1,254 @@
+package me.amuazm.discordFileManager.discord;
+
+import me.amuazm.discordFileManager.metrics.Metrics;
+import me.amuazm.discordFileManager.utils.ConfigManager;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import net.dv8tion.jda.api.utils.FileUpload;
+import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
+import net.dv8tion.jda.api.utils.messages.MessageCreateData;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Outbound messages go through one queue per channel with at most one send in flight, so replies arrive in the
+// order they were made. Whatever piles up behind a send is merged: consecutive texts to the same user become one
+// message (up to the length limit) and attachments share a message (up to the file count and combined upload limit).
+public class MessageOutbox {
+    private final ConfigManager configManager;
+    private final Metrics metrics;
+    private final Map<Long, ChannelQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger peakQueued = new AtomicInteger();
+    private final AtomicLong repliesSent = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+    public MessageOutbox(ConfigManager configManager, Metrics metrics) {
+        this.configManager = configManager;
+        this.metrics = metrics;
+    }
+
+    public CompletableFuture<Message> send(MessageChannel channel, String content) {
+        return enqueue(channel, new Outgoing(content, List.of(), 0, null));
+    }
+
+    // Attachments may be merged with other attachments and texts; the future completes once they are sent
+    public CompletableFuture<Message> sendFiles(MessageChannel channel, String content, List<FileUpload> files, long totalBytes) {
+        return enqueue(channel, new Outgoing(content, files, totalBytes, null));
+    }
+
+    // Never merged with anything, for messages with buttons or ones that get edited or deleted later
+    public CompletableFuture<Message> sendSeparately(MessageChannel channel, MessageCreateData message) {
+        return enqueue(channel, new Outgoing(null, List.of(), 0, message));
+    }
+
+    public CompletableFuture<Message> sendSeparately(MessageChannel channel, String content) {
+        return sendSeparately(channel, new MessageCreateBuilder().setContent(content).build());
+    }
+
+    public Stats getStats() {
+        long messages = messagesSent.get();
+        return new Stats(queued.get(), peakQueued.get(), repliesSent.get(), messages, failures.get(),
+                messages == 0 ? 0 : (double) totalLatencyMillis.get() / messages, maxLatencyMillis.get());
+    }
+
+    private CompletableFuture<Message> enqueue(MessageChannel channel, Outgoing outgoing) {
+        ChannelQueue queue = queues.computeIfAbsent(channel.getIdLong(), id -> new ChannelQueue());
+        boolean startSending;
+
+        synchronized (queue) {
+            queue.items.add(outgoing);
+            startSending = !queue.sending;
+            queue.sending = true;
+        }
+
+        peakQueued.accumulateAndGet(queued.incrementAndGet(), Math::max);
+
+        if (startSending) {
+            sendNext(channel, queue);
+        }
+
+        return outgoing.done;
+    }
+
+    private void sendNext(MessageChannel channel, ChannelQueue queue) {
+        List<Outgoing> batch;
+
+        synchronized (queue) {
+            if (queue.items.isEmpty()) {
+                queue.sending = false;
+                return;
+            }
+
+            batch = takeBatch(queue.items, configManager.getUploadLimitBytes());
+        }
+
+        MessageCreateData message;
+        try {
+            message = build(batch);
+        } catch (RuntimeException e) {
+            finish(batch, null, e);
+            sendNext(channel, queue);
+            return;
+        }
+
+        // JDA can also throw right away (e.g. missing permissions), which must not leave the queue marked as sending
+        try {
+            channel.sendMessage(message).queue(sent -> {
+                finish(batch, sent, null);
+                sendNext(channel, queue);
+            }, throwable -> {
+                finish(batch, null, throwable);
+                sendNext(channel, queue);
+            });
+        } catch (RuntimeException e) {
+            finish(batch, null, e);
+            sendNext(channel, queue);
+        }
+    }
+
+    // Discord's upload limit applies to all attachments of a message together, so files only share a message while
+    // their combined size stays within it. Also used for archive parts, which are sent outside the outbox
+    public static boolean canAddFiles(int fileCount, long fileBytes, int addedFiles, long addedBytes, long uploadLimit) {
+        return fileCount + addedFiles <= Message.MAX_FILE_AMOUNT && (addedFiles == 0 || fileBytes + addedBytes <= uploadLimit);
+    }
+
+    // Takes the first item and everything behind it that can share its message
+    private static List<Outgoing> takeBatch(ArrayDeque<Outgoing> items, long uploadLimit) {
+        Outgoing first = items.poll();
+        List<Outgoing> batch = new ArrayList<>();
+        batch.add(first);
+
+        if (first.prebuilt != null) {
+            return batch;
+        }
+
+        String mention = getMention(first.content);
+        int length = first.content.length();
+        int fileCount = first.files.size();
+        long fileBytes = first.fileBytes;
+
+        while (!items.isEmpty()) {
+            Outgoing next = items.peek();
+
+            if (next.prebuilt != null || !mention.equals(getMention(next.content))
+                    || !canAddFiles(fileCount, fileBytes, next.files.size(), next.fileBytes, uploadLimit)) {
+                break;
+            }
+
+            int addedLength = 1 + next.content.length() - mention.length();
+            if (length + addedLength > Message.MAX_CONTENT_LENGTH) {
+                break;
+            }
+
+            batch.add(items.poll());
+            length += addedLength;
+            fileCount += next.files.size();
+            fileBytes += next.fileBytes;
+        }
+
+        return batch;
+    }
+
+    private static MessageCreateData build(List<Outgoing> batch) {
+        Outgoing first = batch.getFirst();
+
+        if (first.prebuilt != null) {
+            return first.prebuilt;
+        }
+
+        // Merged replies share the first one's mention, so it is only shown once
+        String mention = getMention(first.content);
+        StringBuilder content = new StringBuilder(first.content);
+        MessageCreateBuilder builder = new MessageCreateBuilder();
+
+        for (int i = 0; i < batch.size(); i++) {
+            Outgoing outgoing = batch.get(i);
+            if (i > 0) {
+                String text = outgoing.content.substring(mention.length()).stripLeading();
+                if (!text.isEmpty()) {
+                    content.append('\n').append(text);
+                }
+            }
+            builder.addFiles(outgoing.files);
+        }
+
+        String text = content.length() > Message.MAX_CONTENT_LENGTH ? content.substring(0, Message.MAX_CONTENT_LENGTH - 1) + "…" : content.toString();
+        return builder.setContent(text).build();
+    }
+
+    private void finish(List<Outgoing> batch, Message sent, Throwable throwable) {
+        long now = System.currentTimeMillis();
+        queued.addAndGet(-batch.size());
+
+        if (throwable != null) {
+            failures.incrementAndGet();
+        } else {
+            messagesSent.incrementAndGet();
+            repliesSent.addAndGet(batch.size());
+
+            // Latency of a message is how long its oldest reply waited
+            long latency = now - batch.getFirst().enqueuedAt;
+            totalLatencyMillis.addAndGet(latency);
+            maxLatencyMillis.accumulateAndGet(latency, Math::max);
+            metrics.getSendLatency().record(latency * 1_000_000);
+
+            for (Outgoing outgoing : batch) {
+                metrics.getBytesUploaded().add(outgoing.fileBytes);
+            }
+        }
+
+        for (Outgoing outgoing : batch) {
+            if (throwable != null) {
+                outgoing.done.completeExceptionally(throwable);
+            } else {
+                outgoing.done.complete(sent);
+            }
+        }
+    }
+
+    // Replies start with "<@id>", which is what decides whether they go to the same user
+    private static String getMention(String content) {
+        if (content.startsWith("<@")) {
+            int end = content.indexOf('>');
+            if (end > 0) {
+                return content.substring(0, end + 1);
+            }
+        }
+        return "";
+    }
+
+    private static final class ChannelQueue {
+        private final ArrayDeque<Outgoing> items = new ArrayDeque<>();
+        private boolean sending = false;
+    }
+
+    private static final class Outgoing {
+        private final String content;
+        private final List<FileUpload> files;
+        private final long fileBytes;
+        private final MessageCreateData prebuilt;
+        private final long enqueuedAt = System.currentTimeMillis();
+        private final CompletableFuture<Message> done = new CompletableFuture<>();
+
+        private Outgoing(String content, List<FileUpload> files, long fileBytes, MessageCreateData prebuilt) {
+            this.content = content;
+            this.files = files;
+            this.fileBytes = fileBytes;
+            this.prebuilt = prebuilt;
+        }
+    }
+
+    public record Stats(int queued, int peakQueued, long repliesSent, long messagesSent, long failures,
+                        double averageLatencyMillis, long maxLatencyMillis) {
+    }
+}
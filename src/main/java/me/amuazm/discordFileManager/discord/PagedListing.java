@@ -0,0 +1,130 @@
+package me.amuazm.discordFileManager.discord;
+
+import me.amuazm.discordFileManager.index.IndexedFile;
+import net.dv8tion.jda.api.entities.Message;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import static me.amuazm.discordFileManager.utils.Utils.formatFileSize;
+
+// A sorted list of entries (directories end with a slash) and the heading shown above every page. Directory
+// listings also carry each entry's size and modification time in parallel arrays, taken from the index so that
+// rendering any page needs no file system access; search results leave them null. Grep results page through their
+// "path:line: snippet" lines instead, while entries holds the matched files for the download button.
+public record PagedListing(String title, String[] entries, long[] sizes, long[] lastModified, String[] matchLines, boolean searchResults) {
+    public static final int PAGE_SIZE = 20;
+
+    // Match lines can be a lot longer than file names, so fewer fit on a page
+    public static final int MATCH_PAGE_SIZE = 10;
+
+    public PagedListing(String title, String[] entries, boolean searchResults) {
+        this(title, entries, null, null, null, searchResults);
+    }
+
+    public static PagedListing ofMatches(String title, String[] matchLines, String[] files) {
+        return new PagedListing(title, files, null, null, matchLines, true);
+    }
+
+    public enum SortOrder {
+        NAME, SIZE, MTIME;
+
+        // Null for anything that isn't a sort order
+        public static SortOrder parse(String value) {
+            return switch (value.toLowerCase(Locale.ROOT)) {
+                case "name" -> NAME;
+                case "size" -> SIZE;
+                case "mtime", "modified", "time" -> MTIME;
+                default -> null;
+            };
+        }
+    }
+
+    // Directories first, then files, each in the given order (largest or newest first, ties by name). Directories
+    // are left out when nested dirs are disabled
+    public static PagedListing ofDirectory(String title, List<IndexedFile> files, boolean allowNestedDirs, SortOrder order) {
+        Comparator<IndexedFile> byName = (f1, f2) -> f1.name().compareToIgnoreCase(f2.name());
+        Comparator<IndexedFile> comparator = switch (order) {
+            case NAME -> byName;
+            case SIZE -> Comparator.comparingLong(IndexedFile::size).reversed().thenComparing(byName);
+            case MTIME -> Comparator.comparingLong(IndexedFile::lastModified).reversed().thenComparing(byName);
+        };
+
+        List<IndexedFile> sorted = new ArrayList<>(files.size());
+        for (IndexedFile file : files) {
+            if (allowNestedDirs || !file.directory()) {
+                sorted.add(file);
+            }
+        }
+        sorted.sort(Comparator.comparing((IndexedFile file) -> !file.directory()).thenComparing(comparator));
+
+        String[] entries = new String[sorted.size()];
+        long[] sizes = new long[sorted.size()];
+        long[] lastModified = new long[sorted.size()];
+
+        for (int i = 0; i < entries.length; i++) {
+            IndexedFile file = sorted.get(i);
+            entries[i] = file.directory() ? file.name() + "/" : file.name();
+            sizes[i] = file.size();
+            lastModified[i] = file.lastModified();
+        }
+
+        return new PagedListing(title, entries, sizes, lastModified, null, false);
+    }
+
+    public int getPageCount() {
+        int pageSize = getPageSize();
+        return Math.max(1, (getLineCount() + pageSize - 1) / pageSize);
+    }
+
+    public String render(int page) {
+        int pageCount = getPageCount();
+        int start = page * getPageSize();
+        int end = Math.min(start + getPageSize(), getLineCount());
+
+        StringBuilder content = new StringBuilder(title);
+        if (pageCount > 1) {
+            content.append("Page **").append(page + 1).append("/").append(pageCount).append("** (")
+                    .append(getLineCount()).append(matchLines != null ? " matches)\n" : " entries)\n");
+        }
+        content.append("\n");
+
+        if (matchLines != null) {
+            for (int i = start; i < end; i++) {
+                content.append(matchLines[i]).append("\n");
+            }
+            return truncate(content);
+        }
+
+        for (int i = start; i < end; i++) {
+            String entry = entries[i];
+            boolean directory = entry.endsWith("/");
+            content.append(directory ? "📁 `" : "📄 `").append(entry).append("`");
+
+            if (sizes != null) {
+                if (!directory) {
+                    content.append(" ").append(formatFileSize(sizes[i])).append(",");
+                }
+                // Discord shows relative timestamps in each reader's own time zone
+                content.append(" <t:").append(lastModified[i] / 1000).append(":R>");
+            }
+            content.append("\n");
+        }
+
+        return truncate(content);
+    }
+
+    private int getPageSize() {
+        return matchLines != null ? MATCH_PAGE_SIZE : PAGE_SIZE;
+    }
+
+    private int getLineCount() {
+        return matchLines != null ? matchLines.length : entries.length;
+    }
+
+    private static String truncate(StringBuilder content) {
+        return content.length() > Message.MAX_CONTENT_LENGTH ? content.substring(0, Message.MAX_CONTENT_LENGTH - 1) + "…" : content.toString();
+    }
+}
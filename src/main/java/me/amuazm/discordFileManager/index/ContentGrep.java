@@ -0,0 +1,323 @@
+package me.amuazm.discordFileManager.index;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Searches file contents for a regex on several threads. Files are handed out in the given order. The first few KB of
+// each are read first and the file skipped if they contain a NUL byte (the same binary check git uses); text files
+// are then read and matched in chunks of about 1 MB cut at line breaks, through a buffer each worker reuses, so a
+// match can't span two chunks and memory stays at a few MB per worker however big the files are. Workers stop picking up files once the finished files before them already
+// hold more matches than the cap, so the hits returned are always the first ones in file order.
+public class ContentGrep {
+    private static final int SNIFF_BYTES = 8000;
+    private static final int SNIPPET_LENGTH = 80;
+    private static final int CHUNK_BYTES = 1024 * 1024;
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final long maxFileBytes;
+
+    public ContentGrep(ExecutorService executor, int parallelism, long maxFileBytes) {
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    // Hits come back in file order, then line order, at most maxMatches of them
+    public Result search(Path root, List<IndexedFile> files, Pattern pattern, int maxMatches) throws IOException {
+        Scan scan = new Scan(root, files, pattern, maxMatches);
+        List<Future<?>> workers = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < Math.min(parallelism, files.size()); i++) {
+                workers.add(executor.submit(() -> {
+                    scan.run();
+                    return null;
+                }));
+            }
+
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            workers.forEach(worker -> worker.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while searching file contents");
+        } catch (ExecutionException e) {
+            workers.forEach(worker -> worker.cancel(true));
+            throw new IOException("Error searching file contents: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        List<Hit> hits = new ArrayList<>(Math.min(maxMatches, 256));
+        boolean truncated = false;
+        for (int i = 0; i < scan.hitsByFile.length(); i++) {
+            List<Hit> fileHits = scan.hitsByFile.get(i);
+            if (fileHits == null) {
+                continue;
+            }
+            for (Hit hit : fileHits) {
+                if (hits.size() < maxMatches) {
+                    hits.add(hit);
+                } else {
+                    truncated = true;
+                }
+            }
+        }
+
+        return new Result(hits, truncated, scan.filesScanned.get(), scan.filesSkipped.get(), scan.bytesRead.get());
+    }
+
+    // A single matched line. Line numbers start at 1
+    public record Hit(String relativePath, int line, String snippet) {
+    }
+
+    // filesSkipped counts binary files, files over the size limit and files that couldn't be read
+    public record Result(List<Hit> hits, boolean truncated, int filesScanned, int filesSkipped, long bytesRead) {
+    }
+
+    private final class Scan {
+        private final Path root;
+        private final List<IndexedFile> files;
+        private final Pattern pattern;
+        private final int maxMatches;
+        private final AtomicReferenceArray<List<Hit>> hitsByFile;
+        private final AtomicInteger nextFile = new AtomicInteger();
+
+        // Hit counts of finished files with hits by index, and the last file that still has to be scanned
+        private final TreeMap<Integer, Integer> finishedHits = new TreeMap<>();
+        private volatile int lastNeededFile = Integer.MAX_VALUE;
+        private final AtomicInteger filesScanned = new AtomicInteger();
+        private final AtomicInteger filesSkipped = new AtomicInteger();
+        private final AtomicLong bytesRead = new AtomicLong();
+
+        private Scan(Path root, List<IndexedFile> files, Pattern pattern, int maxMatches) {
+            this.root = root;
+            this.files = files;
+            this.pattern = pattern;
+            this.maxMatches = maxMatches;
+            this.hitsByFile = new AtomicReferenceArray<>(files.size());
+        }
+
+        private void run() throws InterruptedIOException {
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_BYTES);
+
+            for (int i = nextFile.getAndIncrement(); i < files.size() && i <= lastNeededFile; i = nextFile.getAndIncrement()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Interrupted while searching file contents");
+                }
+
+                IndexedFile file = files.get(i);
+                if (file.size() > maxFileBytes) {
+                    filesSkipped.incrementAndGet();
+                    continue;
+                }
+
+                FileHits fileHits = new FileHits(file.relativePath());
+                try {
+                    buffer = scanFile(root.resolve(file.relativePath()), buffer, fileHits);
+                } catch (InterruptedIOException e) {
+                    throw e;
+                } catch (IOException e) {
+                    // Deleted or locked since it was indexed
+                    fileHits.binary = true;
+                }
+
+                // A very long line may have grown the buffer, don't keep that around for the next file
+                if (buffer.capacity() > CHUNK_BYTES) {
+                    buffer = ByteBuffer.allocate(CHUNK_BYTES);
+                }
+
+                if (fileHits.binary) {
+                    filesSkipped.incrementAndGet();
+                    continue;
+                }
+
+                filesScanned.incrementAndGet();
+                if (fileHits.hits != null) {
+                    hitsByFile.set(i, fileHits.hits);
+                    finished(i, fileHits.hits.size());
+                }
+            }
+        }
+
+        // Sniffs the start of the file, then matches it chunk by chunk. Returns the buffer, which grows if a single
+        // line doesn't fit
+        private ByteBuffer scanFile(Path path, ByteBuffer buffer, FileHits fileHits) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                buffer.clear();
+                boolean eof = false;
+                while (buffer.position() < SNIFF_BYTES && !eof) {
+                    eof = fill(channel, buffer, SNIFF_BYTES - buffer.position());
+                }
+
+                if (isBinary(buffer.array(), buffer.position())) {
+                    fileHits.binary = true;
+                    return buffer;
+                }
+
+                while (true) {
+                    while (!eof && buffer.hasRemaining()) {
+                        eof = fill(channel, buffer, buffer.remaining());
+                    }
+                    buffer.flip();
+
+                    int end = eof ? buffer.limit() : lastLineEnd(buffer);
+                    if (end == 0 && !eof) {
+                        // No line break in a full buffer, make room for the rest of the line
+                        buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer);
+                        continue;
+                    }
+
+                    searchText(fileHits, new String(buffer.array(), 0, end, StandardCharsets.UTF_8));
+                    if (eof || (fileHits.hits != null && fileHits.hits.size() > maxMatches)) {
+                        return buffer;
+                    }
+
+                    buffer.position(end);
+                    buffer.compact();
+                }
+            }
+        }
+
+        // True at the end of the file
+        private boolean fill(FileChannel channel, ByteBuffer buffer, int maxBytes) throws IOException {
+            int limit = buffer.limit();
+            buffer.limit(Math.min(limit, buffer.position() + maxBytes));
+            int read = channel.read(buffer);
+            buffer.limit(limit);
+
+            if (read < 0) {
+                return true;
+            }
+            bytesRead.addAndGet(read);
+            return false;
+        }
+
+        // One past the last '\n', 0 if there is none. A newline byte never occurs inside a multi-byte UTF-8 character
+        private static int lastLineEnd(ByteBuffer buffer) {
+            byte[] bytes = buffer.array();
+            for (int i = buffer.limit() - 1; i >= 0; i--) {
+                if (bytes[i] == '\n') {
+                    return i + 1;
+                }
+            }
+            return 0;
+        }
+
+        // Files still running before this one can only add hits that come earlier, so once the finished files up to
+        // some index hold more than the cap, nothing after that index can make it into the result
+        private synchronized void finished(int index, int hitCount) {
+            finishedHits.put(index, hitCount);
+
+            int total = 0;
+            for (Map.Entry<Integer, Integer> entry : finishedHits.headMap(lastNeededFile, true).entrySet()) {
+                total += entry.getValue();
+                if (total > maxMatches) {
+                    lastNeededFile = entry.getKey();
+                    return;
+                }
+            }
+        }
+
+        // Runs the matcher over a whole chunk rather than line by line, and reports each matching line once
+        private void searchText(FileHits fileHits, String text) {
+            Matcher matcher = pattern.matcher(text);
+            int line = fileHits.line;
+            int lineStart = 0;
+            int counted = 0;
+            int from = 0;
+
+            while (from <= text.length() && matcher.find(from)) {
+                int start = matcher.start();
+                for (; counted < start; counted++) {
+                    if (text.charAt(counted) == '\n') {
+                        line++;
+                        lineStart = counted + 1;
+                    }
+                }
+
+                int lineEnd = text.indexOf('\n', start);
+                if (lineEnd < 0) {
+                    lineEnd = text.length();
+                }
+
+                if (fileHits.hits == null) {
+                    fileHits.hits = new ArrayList<>();
+                }
+                fileHits.hits.add(new Hit(fileHits.relativePath, line, snippet(text, lineStart, lineEnd, start)));
+
+                // One past the cap, so the result knows it was cut off
+                if (fileHits.hits.size() > maxMatches) {
+                    return;
+                }
+                from = lineEnd + 1;
+            }
+
+            // Carry the line count over to the next chunk
+            for (; counted < text.length(); counted++) {
+                if (text.charAt(counted) == '\n') {
+                    line++;
+                }
+            }
+            fileHits.line = line;
+        }
+    }
+
+    // What one file has produced so far; binary also covers files that couldn't be read
+    private static final class FileHits {
+        private final String relativePath;
+        private List<Hit> hits;
+        private int line = 1;
+        private boolean binary = false;
+
+        private FileHits(String relativePath) {
+            this.relativePath = relativePath;
+        }
+    }
+
+    private static boolean isBinary(byte[] bytes, int length) {
+        int end = Math.min(length, SNIFF_BYTES);
+        for (int i = 0; i < end; i++) {
+            if (bytes[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The trimmed line, or a window of it starting a little before the match if the line is long
+    private static String snippet(String text, int lineStart, int lineEnd, int matchStart) {
+        int start = lineStart;
+        int end = lineEnd;
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+
+        if (end - start <= SNIPPET_LENGTH) {
+            return text.substring(start, end);
+        }
+
+        int offset = Math.clamp(matchStart - SNIPPET_LENGTH / 4, start, end - SNIPPET_LENGTH);
+        return (offset > start ? "…" : "") + text.substring(offset, offset + SNIPPET_LENGTH) + (offset + SNIPPET_LENGTH < end ? "…" : "");
+    }
+}
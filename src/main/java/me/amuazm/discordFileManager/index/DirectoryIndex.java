@@ -0,0 +1,518 @@
+package me.amuazm.discordFileManager.index;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+public class DirectoryIndex implements Closeable {
+    private static final long POLL_INTERVAL_MILLIS = 30_000;
+
+    private final Path root;
+    private final boolean recursive;
+    private final Logger logger;
+    private final String name;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<WatchKey, Path> watchKeys = new ConcurrentHashMap<>();
+
+    private Node rootNode = Node.directory("", 0);
+    private TrigramIndex names = new TrigramIndex();
+
+    // Rebuilds run one at a time. Paths refreshed while one is scanning are collected here (under the write lock)
+    // and refreshed again on the new tree, the scan may have read them before they changed
+    private final Object rebuildLock = new Object();
+    private Set<Path> refreshedDuringRebuild = null;
+
+    // Completes once the first scan is in; until then lookups wait for it rather than see an empty tree
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private WatchService watchService;
+    private Thread thread;
+    private volatile boolean running = false;
+
+    public DirectoryIndex(Path root, boolean recursive, Logger logger, String name) {
+        this.root = root.toAbsolutePath().normalize();
+        this.recursive = recursive;
+        this.logger = logger;
+        this.name = name;
+    }
+
+    public void start() {
+        running = true;
+
+        try {
+            watchService = root.getFileSystem().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.warning("File watching is not available for " + root + ", falling back to polling every " + (POLL_INTERVAL_MILLIS / 1000) + "s: " + e.getMessage());
+            watchService = null;
+        }
+
+        // The first scan runs on the index thread too, a big tree on a slow disk would otherwise hold up the caller
+        thread = new Thread(() -> {
+            long start = System.nanoTime();
+            rebuild();
+            logger.info("Indexed " + countFiles() + " file(s) in " + root + " in " + ((System.nanoTime() - start) / 1_000_000) + "ms");
+
+            if (watchService != null) {
+                watchLoop();
+            } else {
+                pollLoop();
+            }
+        }, "DiscordFileManager-Index-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+
+        if (thread != null) {
+            thread.interrupt();
+        }
+
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.warning("Error closing watch service for " + root + ": " + e.getMessage());
+            }
+        }
+
+        watchKeys.clear();
+    }
+
+    public void rebuild() {
+        Set<Path> refreshed;
+
+        synchronized (rebuildLock) {
+            lock.writeLock().lock();
+            try {
+                refreshedDuringRebuild = new HashSet<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            Node newRoot = null;
+            TrigramIndex newNames = new TrigramIndex();
+            try {
+                newRoot = scan(root, "");
+                addNames(newNames, newRoot, "");
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    if (newRoot != null) {
+                        rootNode = newRoot;
+                        names = newNames;
+                    }
+                    refreshed = refreshedDuringRebuild;
+                    refreshedDuringRebuild = null;
+                } finally {
+                    lock.writeLock().unlock();
+                    ready.complete(null);
+                }
+            }
+        }
+
+        for (Path path : refreshed) {
+            refresh(path);
+        }
+    }
+
+    // Re-reads a single path (and its subtree if it's a newly seen directory) into the index
+    public void refresh(Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+
+        if (!absolute.startsWith(root)) {
+            return;
+        }
+
+        if (absolute.equals(root)) {
+            rebuild();
+            return;
+        }
+
+        String relativePath = relativize(absolute);
+        String[] segments = relativePath.split("/");
+
+        if (!recursive && segments.length > 1) {
+            return;
+        }
+
+        boolean needsParent = false;
+        boolean needsScan = false;
+
+        lock.writeLock().lock();
+        try {
+            if (refreshedDuringRebuild != null) {
+                refreshedDuringRebuild.add(absolute);
+            }
+
+            // Read under the lock, so two refreshes of the same path can't apply their results out of order
+            BasicFileAttributes attributes = readAttributes(absolute);
+
+            Node parent = find(segments, segments.length - 1);
+
+            if (parent == null || !parent.isDirectory()) {
+                needsParent = attributes != null;
+            } else {
+                String childName = segments[segments.length - 1];
+                Node existing = parent.children.get(childName);
+
+                if (attributes == null) {
+                    removeNames(parent.children.remove(childName), relativePath);
+                } else if (existing != null && existing.isDirectory() == attributes.isDirectory()) {
+                    existing.size = attributes.isDirectory() ? 0 : attributes.size();
+                    existing.lastModified = attributes.lastModifiedTime().toMillis();
+                } else if (!attributes.isDirectory()) {
+                    Node node = Node.file(childName, attributes.size(), attributes.lastModifiedTime().toMillis());
+                    removeNames(parent.children.put(childName, node), relativePath);
+                    names.add(relativePath);
+                } else if (!recursive) {
+                    // Subdirectories of a flat manager are kept as leaves, their contents aren't indexed
+                    removeNames(parent.children.put(childName, Node.directory(childName, attributes.lastModifiedTime().toMillis())), relativePath);
+                } else {
+                    needsScan = true;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // The parent hasn't been indexed yet (e.g. after mkdirs), so pick this path up by scanning from there
+        if (needsParent) {
+            refresh(absolute.getParent());
+            return;
+        }
+
+        // A newly seen directory: walk its subtree outside the lock, then attach it
+        if (needsScan) {
+            Node subtree = scan(absolute, segments[segments.length - 1]);
+
+            lock.writeLock().lock();
+            try {
+                // A refresh in the meantime may have seen it deleted or replaced, that one is newer than this scan
+                BasicFileAttributes attributes = readAttributes(absolute);
+                Node parent = find(segments, segments.length - 1);
+                if (parent != null && parent.isDirectory() && attributes != null && attributes.isDirectory()) {
+                    removeNames(parent.children.put(subtree.name, subtree), relativePath);
+                    addNames(names, subtree, relativePath);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public IndexedFile get(String relativePath) {
+        ready.join();
+        lock.readLock().lock();
+        try {
+            String[] segments = split(relativePath);
+            Node node = find(segments, segments.length);
+            return node == null ? null : node.toIndexedFile(relativePath);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns the children of a directory, or null if the directory isn't in the index
+    public List<IndexedFile> list(String relativePath) {
+        ready.join();
+        lock.readLock().lock();
+        try {
+            String[] segments = split(relativePath);
+            Node node = find(segments, segments.length);
+
+            if (node == null || !node.isDirectory()) {
+                return null;
+            }
+
+            String prefix = relativePath.isEmpty() ? "" : relativePath + "/";
+            List<IndexedFile> entries = new ArrayList<>(node.children.size());
+            for (Node child : node.children.values()) {
+                entries.add(child.toIndexedFile(prefix + child.name));
+            }
+            return entries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns up to limit files whose relative path contains every term, case-insensitively. If there are fewer
+    // than limit of those, the rest is filled with paths matching every term within a couple of typos (distance > 0)
+    public List<TrigramIndex.Match> search(List<String> terms, int limit) {
+        ready.join();
+        lock.readLock().lock();
+        try {
+            // The fuzzy pass scans every name, so it only runs when nothing matches exactly
+            List<TrigramIndex.Match> matches = names.searchSubstring(terms, limit);
+            if (matches.isEmpty()) {
+                matches = names.searchFuzzy(terms, limit);
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns every file under the given directory that matches the filter, in one pass over the in-memory tree
+    public List<IndexedFile> findFiles(String relativeDir, Predicate<IndexedFile> filter) {
+        ready.join();
+        lock.readLock().lock();
+        try {
+            String[] segments = split(relativeDir);
+            Node node = find(segments, segments.length);
+
+            if (node == null || !node.isDirectory()) {
+                return List.of();
+            }
+
+            List<IndexedFile> matches = new ArrayList<>();
+            collectFiles(node, relativeDir, filter, matches);
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public CompletableFuture<Void> getReady() {
+        return ready;
+    }
+
+    // Doesn't wait for the first scan, so stats can be shown while it runs
+    public int countFiles() {
+        lock.readLock().lock();
+        try {
+            return names.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public String relativize(Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+        if (absolute.equals(root)) {
+            return "";
+        }
+        return root.relativize(absolute).toString().replace(File.separatorChar, '/');
+    }
+
+    private void collectFiles(Node directory, String relativePath, Predicate<IndexedFile> filter, List<IndexedFile> matches) {
+        String prefix = relativePath.isEmpty() ? "" : relativePath + "/";
+
+        for (Node child : directory.children.values()) {
+            if (child.isDirectory()) {
+                collectFiles(child, prefix + child.name, filter, matches);
+            } else {
+                IndexedFile file = child.toIndexedFile(prefix + child.name);
+                if (filter.test(file)) {
+                    matches.add(file);
+                }
+            }
+        }
+    }
+
+    private void addNames(TrigramIndex target, Node node, String relativePath) {
+        if (!node.isDirectory()) {
+            target.add(relativePath);
+            return;
+        }
+
+        String prefix = relativePath.isEmpty() ? "" : relativePath + "/";
+        for (Node child : node.children.values()) {
+            addNames(target, child, prefix + child.name);
+        }
+    }
+
+    private void removeNames(Node node, String relativePath) {
+        if (node == null) {
+            return;
+        }
+
+        if (!node.isDirectory()) {
+            names.remove(relativePath);
+            return;
+        }
+
+        for (Node child : node.children.values()) {
+            removeNames(child, relativePath + "/" + child.name);
+        }
+    }
+
+    private Node find(String[] segments, int count) {
+        Node node = rootNode;
+        for (int i = 0; i < count; i++) {
+            if (node.children == null) {
+                return null;
+            }
+            node = node.children.get(segments[i]);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    private static String[] split(String relativePath) {
+        return relativePath.isEmpty() ? new String[0] : relativePath.split("/");
+    }
+
+    // Links aren't followed, the same way scan() sees them
+    private static BasicFileAttributes readAttributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Node scan(Path directory, String directoryName) {
+        Deque<Node> stack = new ArrayDeque<>();
+        Node[] result = new Node[1];
+
+        try {
+            Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), recursive ? Integer.MAX_VALUE : 1, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    Node node = Node.directory(stack.isEmpty() ? directoryName : dir.getFileName().toString(), attrs.lastModifiedTime().toMillis());
+
+                    if (stack.isEmpty()) {
+                        result[0] = node;
+                    } else {
+                        stack.peek().children.put(node.name, node);
+                    }
+
+                    stack.push(node);
+                    register(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    // The start path itself turned out not to be a directory (replaced meanwhile), nothing to attach to
+                    if (stack.isEmpty()) {
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    String fileName = file.getFileName().toString();
+                    Node node = attrs.isDirectory() ?
+                            Node.directory(fileName, attrs.lastModifiedTime().toMillis()) :
+                            Node.file(fileName, attrs.size(), attrs.lastModifiedTime().toMillis());
+                    stack.peek().children.put(fileName, node);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    logger.log(Level.FINE, "Skipping unreadable path while indexing: " + file, e);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                    stack.pop();
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.warning("Error indexing " + directory + ": " + e.getMessage());
+        }
+
+        return result[0] != null ? result[0] : Node.directory(directoryName, 0);
+    }
+
+    private void register(Path dir) {
+        if (watchService == null || !running) {
+            return;
+        }
+
+        try {
+            WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            watchKeys.put(key, dir);
+        } catch (IOException | ClosedWatchServiceException e) {
+            logger.log(Level.FINE, "Could not watch " + dir, e);
+        }
+    }
+
+    private void watchLoop() {
+        while (running) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path dir = watchKeys.get(key);
+            boolean overflowed = false;
+
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    overflowed = true;
+                } else if (dir != null && !overflowed) {
+                    refresh(dir.resolve((Path) event.context()));
+                }
+            }
+
+            if (overflowed) {
+                logger.fine("Watch events overflowed for " + root + ", rebuilding index");
+                rebuild();
+            }
+
+            if (!key.reset()) {
+                watchKeys.remove(key);
+            }
+        }
+    }
+
+    private void pollLoop() {
+        while (running) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            rebuild();
+        }
+    }
+
+    private static final class Node {
+        private final String name;
+        private final Map<String, Node> children;
+        private long size;
+        private long lastModified;
+
+        private Node(String name, Map<String, Node> children, long size, long lastModified) {
+            this.name = name;
+            this.children = children;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        private static Node directory(String name, long lastModified) {
+            return new Node(name, new HashMap<>(), 0, lastModified);
+        }
+
+        private static Node file(String name, long size, long lastModified) {
+            return new Node(name, null, size, lastModified);
+        }
+
+        private boolean isDirectory() {
+            return children != null;
+        }
+
+        private IndexedFile toIndexedFile(String relativePath) {
+            return new IndexedFile(name, relativePath, isDirectory(), size, lastModified);
+        }
+    }
+}
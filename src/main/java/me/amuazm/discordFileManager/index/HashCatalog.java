@@ -0,0 +1,155 @@
+package me.amuazm.discordFileManager.index;
+
+import me.amuazm.discordFileManager.utils.BufferPool;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+// Persistent SHA-256 catalog of the files under a root. A cached hash is reused as long as the file's size and
+// modification time are unchanged, so unchanged files are never read twice.
+public class HashCatalog {
+    private final Path root;
+    private final Path storeFile;
+    private final Logger logger;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean dirty = false;
+
+    public HashCatalog(Path root, Path storeFile, Logger logger) {
+        this.root = root.toAbsolutePath().normalize();
+        this.storeFile = storeFile;
+        this.logger = logger;
+    }
+
+    // File format: one "<sha256 hex>\t<size>\t<mtime millis>\t<relative path>" line per file
+    public synchronized void load() {
+        entries.clear();
+
+        if (!Files.exists(storeFile)) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(storeFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", 4);
+                if (parts.length == 4) {
+                    entries.put(parts[3], new Entry(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            logger.warning("Could not load hash catalog " + storeFile + ", hashes will be recomputed: " + e.getMessage());
+            entries.clear();
+        }
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(storeFile.getParent());
+            Path tempFile = storeFile.resolveSibling(storeFile.getFileName() + ".tmp");
+
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    Entry value = entry.getValue();
+                    writer.write(value.sha256 + "\t" + value.size + "\t" + value.lastModified + "\t" + entry.getKey());
+                    writer.newLine();
+                }
+            }
+
+            Files.move(tempFile, storeFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            logger.warning("Could not save hash catalog " + storeFile + ": " + e.getMessage());
+        }
+    }
+
+    // Returns the file's SHA-256 as hex, reading the file only if it changed since it was last hashed
+    public String getHash(String relativePath) throws IOException {
+        Path file = root.resolve(relativePath);
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+
+        synchronized (this) {
+            Entry entry = entries.get(relativePath);
+            if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+                return entry.sha256;
+            }
+        }
+
+        String sha256;
+        try (InputStream in = Files.newInputStream(file)) {
+            sha256 = sha256(in);
+        }
+
+        put(relativePath, sha256, size, lastModified);
+        return sha256;
+    }
+
+    // Records a hash computed elsewhere (e.g. while an upload was streamed to disk)
+    public void put(String relativePath, String sha256) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(root.resolve(relativePath), BasicFileAttributes.class);
+        put(relativePath, sha256, attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    // Drops the entries of files that are gone, e.g. deleted or renamed outside the bot
+    public synchronized void retainAll(Predicate<String> exists) {
+        if (entries.keySet().removeIf(exists.negate())) {
+            dirty = true;
+        }
+    }
+
+    public synchronized void remove(String relativePath) {
+        if (entries.remove(relativePath) != null) {
+            dirty = true;
+        }
+    }
+
+    private synchronized void put(String relativePath, String sha256, long size, long lastModified) {
+        entries.put(relativePath, new Entry(sha256, size, lastModified));
+        dirty = true;
+    }
+
+    public static String sha256(InputStream in) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = BufferPool.acquire();
+
+        try {
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, length);
+            }
+        } finally {
+            BufferPool.release(buffer);
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record Entry(String sha256, long size, long lastModified) {
+    }
+}
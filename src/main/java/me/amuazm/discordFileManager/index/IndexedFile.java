@@ -0,0 +1,5 @@
+package me.amuazm.discordFileManager.index;
+
+// Immutable view of a single index entry, handed out to command handlers
+public record IndexedFile(String name, String relativePath, boolean directory, long size, long lastModified) {
+}
@@ -0,0 +1,88 @@
+package me.amuazm.discordFileManager.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+// Keeps user-supplied paths inside a managed root. The root's real path is looked up once per file manager (so once
+// per reload); after that a lookup costs one toRealPath and one attribute read, and the handle it returns carries
+// the relative path and attributes so handlers don't need to go back to the file system for them.
+public class PathSandbox {
+    private final Path root;
+
+    public PathSandbox(Path root) throws IOException {
+        this.root = root.toRealPath();
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    // Returns null if the path leads outside the root, either lexically or through a symlink. Paths that don't exist
+    // yet (upload and mkdir targets) are checked through their nearest existing parent
+    public ResolvedPath resolve(String relativePath) throws IOException {
+        Path target = root.resolve(relativePath).normalize();
+
+        if (!target.startsWith(root)) {
+            return null;
+        }
+
+        Path realTarget;
+        try {
+            realTarget = target.toRealPath();
+        } catch (NoSuchFileException e) {
+            return isInsideRoot(target.getParent()) ? new ResolvedPath(relativize(target), target, null) : null;
+        }
+
+        if (!realTarget.startsWith(root)) {
+            return null;
+        }
+
+        return new ResolvedPath(relativize(target), target, Files.readAttributes(realTarget, BasicFileAttributes.class));
+    }
+
+    private boolean isInsideRoot(Path path) throws IOException {
+        for (Path current = path; current != null && current.startsWith(root); current = current.getParent()) {
+            try {
+                return current.toRealPath().startsWith(root);
+            } catch (NoSuchFileException e) {
+                // Keep walking up to the first parent that exists
+            }
+        }
+        return false;
+    }
+
+    private String relativize(Path path) {
+        return root.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    // A path inside the root as it was when resolved. Attributes are null if nothing existed there
+    public record ResolvedPath(String relativePath, Path path, BasicFileAttributes attributes) {
+        public boolean exists() {
+            return attributes != null;
+        }
+
+        public boolean isFile() {
+            return attributes != null && attributes.isRegularFile();
+        }
+
+        public boolean isDirectory() {
+            return attributes != null && attributes.isDirectory();
+        }
+
+        public long size() {
+            return attributes != null ? attributes.size() : 0;
+        }
+
+        public String name() {
+            return path.getFileName() != null ? path.getFileName().toString() : "";
+        }
+
+        public File toFile() {
+            return path.toFile();
+        }
+    }
+}
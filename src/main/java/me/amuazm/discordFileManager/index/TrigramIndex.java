@@ -0,0 +1,330 @@
+package me.amuazm.discordFileManager.index;
+
+import java.util.*;
+
+// Substring and typo-tolerant search over relative paths. Every lowercase path is broken into its three-character
+// windows, and each trigram maps to the sorted ids of the paths containing it, so a query only looks at paths that
+// share its trigrams. Ids are handed out in increasing order and never reused, which keeps the posting lists sorted
+// and duplicate-free with plain appends. Not thread-safe, callers must lock.
+public class TrigramIndex {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> paths = new ArrayList<>();
+    private final List<String> lowerPaths = new ArrayList<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    public void add(String relativePath) {
+        if (ids.containsKey(relativePath)) {
+            return;
+        }
+
+        int id = paths.size();
+        String lowerPath = relativePath.toLowerCase(Locale.ROOT);
+        ids.put(relativePath, id);
+        paths.add(relativePath);
+        lowerPaths.add(lowerPath);
+
+        for (int i = 0; i + 3 <= lowerPath.length(); i++) {
+            postings.computeIfAbsent(trigram(lowerPath, i), key -> new Postings()).append(id);
+        }
+    }
+
+    public void remove(String relativePath) {
+        Integer id = ids.remove(relativePath);
+        if (id == null) {
+            return;
+        }
+
+        String lowerPath = lowerPaths.get(id);
+        for (int i = 0; i + 3 <= lowerPath.length(); i++) {
+            Long key = trigram(lowerPath, i);
+            Postings list = postings.get(key);
+            if (list != null && list.remove(id) && list.size == 0) {
+                postings.remove(key);
+            }
+        }
+
+        paths.set(id, null);
+        lowerPaths.set(id, null);
+
+        // Ids aren't reused, so renumber once removed paths outweigh the live ones
+        if (paths.size() > 1024 && paths.size() > 2 * ids.size()) {
+            compact();
+        }
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    // Paths containing every term. Paths whose file name starts with the first term come first, then those whose
+    // name contains every term, then the rest; each group is ordered by name, then path
+    public List<Match> searchSubstring(List<String> terms, int limit) {
+        List<String> lowerTerms = normalize(terms);
+        if (lowerTerms.isEmpty()) {
+            return List.of();
+        }
+
+        // Intersect the shortest posting lists first; terms under three characters are only checked on the candidates
+        List<Postings> required = new ArrayList<>();
+        for (String term : lowerTerms) {
+            for (int i = 0; i + 3 <= term.length(); i++) {
+                Postings list = postings.get(trigram(term, i));
+                if (list == null) {
+                    return List.of();
+                }
+                required.add(list);
+            }
+        }
+        required.sort(Comparator.comparingInt(list -> list.size));
+
+        int[] candidates = required.isEmpty() ? null : Arrays.copyOf(required.getFirst().ids, required.getFirst().size);
+        int candidateCount = candidates == null ? paths.size() : candidates.length;
+        for (int i = 1; i < required.size() && candidateCount > 0; i++) {
+            candidateCount = required.get(i).retainIn(candidates, candidateCount);
+        }
+
+        TopMatches top = new TopMatches(limit);
+        for (int i = 0; i < candidateCount; i++) {
+            int id = candidates == null ? i : candidates[i];
+            String lowerPath = lowerPaths.get(id);
+
+            if (lowerPath != null && containsAll(lowerPath, lowerTerms)) {
+                top.offer(new Match(paths.get(id), 0, substringTier(lowerPath, lowerTerms), lowerPath.substring(nameStart(lowerPath))));
+            }
+        }
+
+        return top.sorted();
+    }
+
+    // Paths where every term is found within a few edits (one for terms of 4-6 characters, two for longer ones,
+    // none for shorter ones), ranked by the total number of edits. Exact substring matches come out with distance 0.
+    // Counts shared trigrams for every id in the index, so it's meant as a fallback when searchSubstring finds nothing
+    public List<Match> searchFuzzy(List<String> terms, int limit) {
+        List<String> lowerTerms = normalize(terms);
+        if (lowerTerms.stream().allMatch(term -> maxEdits(term) == 0)) {
+            return searchSubstring(lowerTerms, limit);
+        }
+
+        // A single edit changes at most three trigrams, so a path within k edits of a term still shares all but 3k
+        // of its trigrams. Counting shared trigrams per path narrows the candidates before any distance is computed
+        int[] passedTerms = new int[paths.size()];
+        int indexedTerms = 0;
+
+        for (String term : lowerTerms) {
+            int trigramCount = term.length() - 2;
+            if (trigramCount <= 0) {
+                continue;
+            }
+
+            Set<Long> trigrams = new HashSet<>();
+            for (int i = 0; i < trigramCount; i++) {
+                trigrams.add(trigram(term, i));
+            }
+
+            int[] counts = new int[paths.size()];
+            for (Long key : trigrams) {
+                Postings list = postings.get(key);
+                if (list != null) {
+                    for (int j = 0; j < list.size; j++) {
+                        counts[list.ids[j]]++;
+                    }
+                }
+            }
+
+            int threshold = Math.max(1, trigrams.size() - 3 * maxEdits(term));
+            for (int id = 0; id < counts.length; id++) {
+                if (counts[id] >= threshold && passedTerms[id] == indexedTerms) {
+                    passedTerms[id]++;
+                }
+            }
+            indexedTerms++;
+        }
+
+        TopMatches top = new TopMatches(limit);
+        int[] row = new int[lowerTerms.stream().mapToInt(String::length).max().orElse(0) + 1];
+        int[] previousRow = new int[row.length];
+
+        for (int id = 0; id < paths.size(); id++) {
+            String lowerPath = lowerPaths.get(id);
+            if (lowerPath == null || passedTerms[id] != indexedTerms) {
+                continue;
+            }
+
+            int totalDistance = 0;
+            for (String term : lowerTerms) {
+                int distance = substringDistance(term, lowerPath, row, previousRow);
+                if (distance > maxEdits(term)) {
+                    totalDistance = -1;
+                    break;
+                }
+                totalDistance += distance;
+            }
+
+            if (totalDistance >= 0) {
+                top.offer(new Match(paths.get(id), totalDistance, substringTier(lowerPath, lowerTerms), lowerPath.substring(nameStart(lowerPath))));
+            }
+        }
+
+        return top.sorted();
+    }
+
+    private void compact() {
+        List<String> livePaths = new ArrayList<>(ids.size());
+        for (String path : paths) {
+            if (path != null) {
+                livePaths.add(path);
+            }
+        }
+
+        ids.clear();
+        paths.clear();
+        lowerPaths.clear();
+        postings.clear();
+        livePaths.forEach(this::add);
+    }
+
+    private static List<String> normalize(List<String> terms) {
+        List<String> lowerTerms = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            if (!term.isEmpty()) {
+                lowerTerms.add(term.toLowerCase(Locale.ROOT));
+            }
+        }
+        return lowerTerms;
+    }
+
+    private static int maxEdits(String term) {
+        return term.length() < 4 ? 0 : term.length() <= 6 ? 1 : 2;
+    }
+
+    private static boolean containsAll(String lowerPath, List<String> lowerTerms) {
+        for (String term : lowerTerms) {
+            if (!lowerPath.contains(term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int substringTier(String lowerPath, List<String> lowerTerms) {
+        int nameStart = nameStart(lowerPath);
+        if (lowerPath.startsWith(lowerTerms.getFirst(), nameStart)) {
+            return 0;
+        }
+
+        for (String term : lowerTerms) {
+            if (lowerPath.indexOf(term, nameStart) < 0) {
+                return 2;
+            }
+        }
+        return 1;
+    }
+
+    private static int nameStart(String path) {
+        return path.lastIndexOf('/') + 1;
+    }
+
+    // Fewest edits turning the term into any substring of the text (Sellers' algorithm), reusing the given rows
+    private static int substringDistance(String term, String text, int[] row, int[] previousRow) {
+        int m = term.length();
+        for (int i = 0; i <= m; i++) {
+            previousRow[i] = i;
+        }
+
+        int best = m;
+        for (int j = 0; j < text.length(); j++) {
+            char c = text.charAt(j);
+            row[0] = 0;
+            for (int i = 1; i <= m; i++) {
+                int substitution = previousRow[i - 1] + (term.charAt(i - 1) == c ? 0 : 1);
+                row[i] = Math.min(substitution, Math.min(previousRow[i], row[i - 1]) + 1);
+            }
+            best = Math.min(best, row[m]);
+
+            int[] swap = previousRow;
+            previousRow = row;
+            row = swap;
+        }
+        return best;
+    }
+
+    private static Long trigram(String text, int offset) {
+        return ((long) text.charAt(offset) << 32) | ((long) text.charAt(offset + 1) << 16) | text.charAt(offset + 2);
+    }
+
+    // A search hit: the edit distance (0 for exact matches), then how well the file name matched, for ranking
+    public record Match(String relativePath, int distance, int tier, String lowerName) {
+        private static final Comparator<Match> RANKING = Comparator.comparingInt(Match::distance)
+                .thenComparingInt(Match::tier)
+                .thenComparing(Match::lowerName)
+                .thenComparing(Match::relativePath);
+    }
+
+    // Keeps the best limit matches in a bounded heap, so ranking many hits never sorts all of them
+    private static final class TopMatches {
+        private final int limit;
+        private final PriorityQueue<Match> heap;
+
+        private TopMatches(int limit) {
+            this.limit = limit;
+            this.heap = new PriorityQueue<>(Math.min(limit, 256) + 1, Match.RANKING.reversed());
+        }
+
+        private void offer(Match match) {
+            if (heap.size() < limit) {
+                heap.add(match);
+            } else if (limit > 0 && Match.RANKING.compare(match, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(match);
+            }
+        }
+
+        private List<Match> sorted() {
+            List<Match> matches = new ArrayList<>(heap);
+            matches.sort(Match.RANKING);
+            return matches;
+        }
+    }
+
+    // Sorted ids of the paths containing one trigram
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private int size = 0;
+
+        // Ids arrive in increasing order; a path containing the trigram twice is only listed once
+        private void append(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        private boolean remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+            return true;
+        }
+
+        // Keeps the candidates that are also in this list, in place, and returns how many are left
+        private int retainIn(int[] candidates, int count) {
+            int kept = 0;
+            int position = 0;
+            for (int i = 0; i < count && position < size; i++) {
+                position = Arrays.binarySearch(ids, position, size, candidates[i]);
+                if (position >= 0) {
+                    candidates[kept++] = candidates[i];
+                } else {
+                    position = -position - 1;
+                }
+            }
+            return kept;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package me.amuazm.discordFileManager.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fixed-bucket latency histogram. Recording is a short scan over the bounds and a few uncontended adds, so it can
+// sit on every command and send; counts are only summed up when someone reads them.
+public class LatencyHistogram {
+    // Upper bucket bounds in milliseconds, shared by every histogram so their buckets line up when exported
+    public static final long[] BOUNDS_MILLIS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10_000, 30_000, 60_000};
+
+    private static final long[] BOUNDS_NANOS = new long[BOUNDS_MILLIS.length];
+
+    static {
+        for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+            BOUNDS_NANOS[i] = BOUNDS_MILLIS[i] * 1_000_000;
+        }
+    }
+
+    // One more than the bounds, the last bucket takes everything slower
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_NANOS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        int bucket = 0;
+        while (bucket < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+
+        buckets[bucket].increment();
+        sumNanos.add(nanos);
+        if (nanos > maxNanos.get()) {
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[buckets.length];
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        return new Snapshot(counts, count, sumNanos.sum(), maxNanos.get());
+    }
+
+    // Counts per bucket (not cumulative), read without stopping writers, so they can be a few records apart
+    public record Snapshot(long[] counts, long count, long sumNanos, long maxNanos) {
+        public double averageMillis() {
+            return count == 0 ? 0 : sumNanos / 1e6 / count;
+        }
+
+        // Upper bound of the bucket holding the given quantile, or the slowest time seen if that's in the last bucket
+        public double quantileMillis(double quantile) {
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(BOUNDS_MILLIS[i], maxNanos / 1e6);
+                }
+            }
+            return maxNanos / 1e6;
+        }
+    }
+}
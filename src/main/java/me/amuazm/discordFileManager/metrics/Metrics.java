@@ -0,0 +1,58 @@
+package me.amuazm.discordFileManager.metrics;
+
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters and latency histograms for the whole plugin. Lives as long as the plugin, so totals survive reloads.
+// Everything is recorded with LongAdders that writers never contend on; nothing is aggregated until a report is made.
+@Getter
+public class Metrics {
+    private final long startNanos = System.nanoTime();
+    private final Map<CommandKey, LatencyHistogram> commands = new ConcurrentHashMap<>();
+
+    // Time from queueing a Discord message until Discord accepted it
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesZipped = new LongAdder();
+    private final LongAdder bytesUploaded = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+
+    // Time spent inside JDA listener callbacks, which all run on JDA's event thread
+    private final LongAdder events = new LongAdder();
+    private final LongAdder eventBusyNanos = new LongAdder();
+
+    // Latency of a file manager's verb, e.g. ("s", "search"), measured from the command arriving until its handler
+    // finished, so time spent waiting for a free command slot is included
+    public void recordCommand(String manager, String verb, long nanos) {
+        commands.computeIfAbsent(new CommandKey(manager, verb), key -> new LatencyHistogram()).record(nanos);
+    }
+
+    public void recordEvent(long nanos) {
+        events.increment();
+        eventBusyNanos.add(nanos);
+    }
+
+    public long getUptimeNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    // Ordered by manager, then verb
+    public Map<CommandKey, LatencyHistogram.Snapshot> snapshotCommands() {
+        Map<CommandKey, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        commands.forEach((key, histogram) -> snapshots.put(key, histogram.snapshot()));
+        return snapshots;
+    }
+
+    public record CommandKey(String manager, String verb) implements Comparable<CommandKey> {
+        @Override
+        public int compareTo(CommandKey other) {
+            int byManager = manager.compareTo(other.manager);
+            return byManager != 0 ? byManager : verb.compareTo(other.verb);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package me.amuazm.discordFileManager.metrics;
+
+import me.amuazm.discordFileManager.DiscordFileManager;
+import me.amuazm.discordFileManager.discord.CommandExecutionService;
+import me.amuazm.discordFileManager.discord.FileManager;
+import me.amuazm.discordFileManager.discord.MessageOutbox;
+import me.amuazm.discordFileManager.utils.ExpiringCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static me.amuazm.discordFileManager.utils.Utils.formatFileSize;
+
+// Turns the plugin's metrics into text, either short lines for /dfm stats or the Prometheus text format. All the
+// aggregation happens here, so it only costs anything when someone asks.
+public class MetricsReport {
+    private final DiscordFileManager plugin;
+
+    public MetricsReport(DiscordFileManager plugin) {
+        this.plugin = plugin;
+    }
+
+    public List<String> renderSummary() {
+        Metrics metrics = plugin.getMetrics();
+        List<String> lines = new ArrayList<>();
+        double uptimeSeconds = metrics.getUptimeNanos() / 1e9;
+
+        lines.add(String.format("Uptime %s, event thread busy %.2f%% (%d events, %.2f ms avg)", formatDuration(uptimeSeconds),
+                100.0 * metrics.getEventBusyNanos().sum() / metrics.getUptimeNanos(), metrics.getEvents().sum(),
+                metrics.getEvents().sum() == 0 ? 0 : metrics.getEventBusyNanos().sum() / 1e6 / metrics.getEvents().sum()));
+
+        Map<Metrics.CommandKey, LatencyHistogram.Snapshot> commands = metrics.snapshotCommands();
+        if (commands.isEmpty()) {
+            lines.add("No commands run yet");
+        }
+        commands.forEach((key, snapshot) -> lines.add(String.format("$%s-%s: %d run(s), avg %.0f ms, p50 %s, p95 %s, max %.0f ms",
+                key.manager(), key.verb(), snapshot.count(), snapshot.averageMillis(), formatQuantile(snapshot, 0.5),
+                formatQuantile(snapshot, 0.95), snapshot.maxNanos() / 1e6)));
+
+        lines.add("Bytes read " + formatFileSize(metrics.getBytesRead().sum()) + ", zipped " + formatFileSize(metrics.getBytesZipped().sum())
+                + ", uploaded " + formatFileSize(metrics.getBytesUploaded().sum()) + ", received " + formatFileSize(metrics.getBytesReceived().sum()));
+
+        MessageOutbox outbox = plugin.getMessageOutbox();
+        if (outbox != null) {
+            MessageOutbox.Stats stats = outbox.getStats();
+            LatencyHistogram.Snapshot send = metrics.getSendLatency().snapshot();
+            lines.add(String.format("Discord: %d replies in %d messages, %d failed, %d queued (peak %d), send p50 %s, p95 %s",
+                    stats.repliesSent(), stats.messagesSent(), stats.failures(), stats.queued(), stats.peakQueued(),
+                    formatQuantile(send, 0.5), formatQuantile(send, 0.95)));
+        }
+
+        CommandExecutionService executionService = plugin.getCommandExecutionService();
+        if (executionService != null) {
+            lines.add("Commands running or queued: " + executionService.getPendingCount());
+        }
+
+        for (FileManager fileManager : plugin.getFileManagers()) {
+            ExpiringCache.Stats cache = fileManager.getListingCache().getStats();
+            lines.add(String.format("$%s: %d file(s) indexed, listing cache %d entries (%s), %.0f%% hit rate",
+                    fileManager.getCommandPrefix(), fileManager.getIndex() != null ? fileManager.getIndex().countFiles() : 0,
+                    cache.size(), formatFileSize(cache.weight()), cache.hitRate() * 100));
+        }
+
+        return lines;
+    }
+
+    public String renderPrometheus() {
+        Metrics metrics = plugin.getMetrics();
+        StringBuilder out = new StringBuilder(4096);
+
+        header(out, "dfm_command_duration_seconds", "histogram", "Time from a Discord command arriving until its handler finished, including time queued");
+        metrics.snapshotCommands().forEach((key, snapshot) ->
+                histogram(out, "dfm_command_duration_seconds", "manager=\"" + escape(key.manager()) + "\",verb=\"" + escape(key.verb()) + "\"", snapshot));
+
+        header(out, "dfm_discord_send_duration_seconds", "histogram", "Time from queueing a Discord message until it was sent");
+        histogram(out, "dfm_discord_send_duration_seconds", "", metrics.getSendLatency().snapshot());
+
+        header(out, "dfm_bytes_total", "counter", "Bytes read from managed files, written to zips, uploaded to Discord and received from Discord");
+        sample(out, "dfm_bytes_total", "kind=\"read\"", metrics.getBytesRead().sum());
+        sample(out, "dfm_bytes_total", "kind=\"zipped\"", metrics.getBytesZipped().sum());
+        sample(out, "dfm_bytes_total", "kind=\"uploaded\"", metrics.getBytesUploaded().sum());
+        sample(out, "dfm_bytes_total", "kind=\"received\"", metrics.getBytesReceived().sum());
+
+        header(out, "dfm_events_total", "counter", "JDA events handled");
+        sample(out, "dfm_events_total", "", metrics.getEvents().sum());
+        header(out, "dfm_event_busy_seconds_total", "counter", "Time spent on the JDA event thread handling events");
+        sample(out, "dfm_event_busy_seconds_total", "", metrics.getEventBusyNanos().sum() / 1e9);
+
+        MessageOutbox outbox = plugin.getMessageOutbox();
+        if (outbox != null) {
+            MessageOutbox.Stats stats = outbox.getStats();
+            header(out, "dfm_discord_messages_total", "counter", "Discord messages sent, several replies can share one");
+            sample(out, "dfm_discord_messages_total", "", stats.messagesSent());
+            header(out, "dfm_discord_replies_total", "counter", "Replies sent to Discord");
+            sample(out, "dfm_discord_replies_total", "", stats.repliesSent());
+            header(out, "dfm_discord_send_failures_total", "counter", "Discord messages that failed to send");
+            sample(out, "dfm_discord_send_failures_total", "", stats.failures());
+            header(out, "dfm_discord_queued", "gauge", "Replies waiting to be sent");
+            sample(out, "dfm_discord_queued", "", stats.queued());
+        }
+
+        CommandExecutionService executionService = plugin.getCommandExecutionService();
+        if (executionService != null) {
+            header(out, "dfm_commands_pending", "gauge", "Commands running or waiting for a slot");
+            sample(out, "dfm_commands_pending", "", executionService.getPendingCount());
+        }
+
+        List<FileManager> fileManagers = plugin.getFileManagers();
+        header(out, "dfm_indexed_files", "gauge", "Files in a file manager's index");
+        for (FileManager fileManager : fileManagers) {
+            if (fileManager.getIndex() != null) {
+                sample(out, "dfm_indexed_files", managerLabel(fileManager), fileManager.getIndex().countFiles());
+            }
+        }
+
+        header(out, "dfm_listing_cache_requests_total", "counter", "Lookups of cached listings and search results by page and download buttons");
+        for (FileManager fileManager : fileManagers) {
+            ExpiringCache.Stats cache = fileManager.getListingCache().getStats();
+            sample(out, "dfm_listing_cache_requests_total", managerLabel(fileManager) + ",result=\"hit\"", cache.hits());
+            sample(out, "dfm_listing_cache_requests_total", managerLabel(fileManager) + ",result=\"miss\"", cache.misses());
+        }
+
+        header(out, "dfm_listing_cache_bytes", "gauge", "Estimated memory used by cached listings");
+        for (FileManager fileManager : fileManagers) {
+            sample(out, "dfm_listing_cache_bytes", managerLabel(fileManager), fileManager.getListingCache().getStats().weight());
+        }
+
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram.Snapshot snapshot) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < LatencyHistogram.BOUNDS_MILLIS.length; i++) {
+            cumulative += snapshot.counts()[i];
+            sample(out, name + "_bucket", prefix + "le=\"" + LatencyHistogram.BOUNDS_MILLIS[i] / 1000.0 + "\"", cumulative);
+        }
+        sample(out, name + "_bucket", prefix + "le=\"+Inf\"", snapshot.count());
+        sample(out, name + "_sum", labels, snapshot.sumNanos() / 1e9);
+        sample(out, name + "_count", labels, snapshot.count());
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String managerLabel(FileManager fileManager) {
+        return "manager=\"" + escape(fileManager.getCommandPrefix()) + "\"";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String formatQuantile(LatencyHistogram.Snapshot snapshot, double quantile) {
+        return snapshot.count() == 0 ? "-" : String.format("≤%.0f ms", snapshot.quantileMillis(quantile));
+    }
+
+    private static String formatDuration(double seconds) {
+        long total = (long) seconds;
+        return total >= 3600 ? (total / 3600) + "h " + (total % 3600 / 60) + "m" : (total / 60) + "m " + (total % 60) + "s";
+    }
+}
@@ -0,0 +1,70 @@
+package me.amuazm.discordFileManager.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+// Serves the Prometheus text format on http://127.0.0.1:<port>/metrics. Only bound to loopback, so it is reachable
+// from the machine itself (or through whatever the owner sets up), never directly from outside.
+public class MetricsServer {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final int port;
+
+    public MetricsServer(int port, Supplier<String> metrics, Logger logger) throws IOException {
+        this.port = port;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DiscordFileManager-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        server.createContext("/metrics", exchange -> {
+            try {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    respond(exchange, 405, "Method not allowed\n");
+                    return;
+                }
+                respond(exchange, 200, metrics.get());
+            } catch (Exception e) {
+                logger.warning("Error serving metrics: " + e.getMessage());
+                respond(exchange, 500, "Error collecting metrics\n");
+            } finally {
+                exchange.close();
+            }
+        });
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
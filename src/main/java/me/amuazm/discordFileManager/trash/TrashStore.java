@@ -0,0 +1,309 @@
+package me.amuazm.discordFileManager.trash;
+
+import me.amuazm.discordFileManager.index.HashCatalog;
+import me.amuazm.discordFileManager.utils.BufferPool;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Local version store for deleted and overwritten files. Contents are kept once per SHA-256 under blobs/, so
+// storing a file is a rename and one read to hash it (the file is dropped instead if the same content is already
+// kept). Blobs are gzipped and old versions pruned afterwards by maintain(), which callers run in the background.
+public class TrashStore {
+    private final Path storeDir;
+    private final Path blobDir;
+    private final Path logFile;
+    private final Logger logger;
+    // Held while blobs are compressed, pruned or read back, so a restore never loses its blob halfway
+    private final Object maintenanceLock = new Object();
+
+    // Changed in place on reload, the store itself outlives the file managers using it
+    private volatile long maxBytes;
+    private volatile long maxAgeMillis;
+
+    private final List<TrashVersion> versions = new ArrayList<>();
+    private int nextId = 1;
+
+    public TrashStore(Path storeDir, long maxBytes, long maxAgeMillis, Logger logger) {
+        this.storeDir = storeDir;
+        this.blobDir = storeDir.resolve("blobs");
+        this.logFile = storeDir.resolve("versions.tsv");
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAgeMillis;
+        this.logger = logger;
+    }
+
+    public void setLimits(long maxBytes, long maxAgeMillis) {
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    // Log format: one "<id>\t<timestamp>\t<sha256>\t<size>\t<reason>\t<relative path>" line per version, oldest first
+    public synchronized void load() {
+        versions.clear();
+        nextId = 1;
+
+        if (!Files.exists(logFile)) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", 6);
+                if (parts.length < 6) {
+                    continue;
+                }
+
+                TrashVersion version = new TrashVersion(Integer.parseInt(parts[0]), Long.parseLong(parts[1]), parts[2], Long.parseLong(parts[3]), parts[4], parts[5]);
+                versions.add(version);
+                nextId = Math.max(nextId, version.id() + 1);
+            }
+        } catch (IOException | NumberFormatException e) {
+            logger.warning("Could not load trash log " + logFile + ": " + e.getMessage());
+        }
+    }
+
+    // Moves the file out of its directory into the store. The hash is taken from the moved bytes rather than the
+    // hash catalog: a stale catalog entry would otherwise drop the file as a duplicate of some other content
+    public TrashVersion store(Path file, String relativePath, String reason) throws IOException {
+        Files.createDirectories(storeDir);
+        Path incoming = storeDir.resolve("incoming-" + UUID.randomUUID() + ".tmp");
+        Files.move(file, incoming);
+
+        long size;
+        String sha256;
+        try (InputStream in = Files.newInputStream(incoming)) {
+            size = Files.size(incoming);
+            sha256 = HashCatalog.sha256(in);
+        } catch (IOException e) {
+            // Put it back, the caller reports the failure and the file stays where it was
+            Files.move(incoming, file);
+            throw e;
+        }
+
+        synchronized (this) {
+            Path rawBlob = blobPath(sha256, false);
+
+            if (Files.exists(rawBlob) || Files.exists(blobPath(sha256, true))) {
+                // Same content is already kept, the file itself isn't needed
+                Files.delete(incoming);
+            } else {
+                Files.createDirectories(rawBlob.getParent());
+                Files.move(incoming, rawBlob);
+            }
+
+            TrashVersion version = new TrashVersion(nextId++, System.currentTimeMillis(), sha256, size, reason, relativePath);
+            versions.add(version);
+            appendToLog(version);
+            return version;
+        }
+    }
+
+    public synchronized TrashVersion get(int id) {
+        for (TrashVersion version : versions) {
+            if (version.id() == id) {
+                return version;
+            }
+        }
+        return null;
+    }
+
+    // Newest first
+    public synchronized List<TrashVersion> getVersions(String relativePath) {
+        List<TrashVersion> result = new ArrayList<>();
+        for (int i = versions.size() - 1; i >= 0; i--) {
+            if (versions.get(i).relativePath().equals(relativePath)) {
+                result.add(versions.get(i));
+            }
+        }
+        return result;
+    }
+
+    // Newest first
+    public synchronized List<TrashVersion> getRecent(int limit) {
+        List<TrashVersion> result = new ArrayList<>(Math.min(limit, versions.size()));
+        for (int i = versions.size() - 1; i >= 0 && result.size() < limit; i--) {
+            result.add(versions.get(i));
+        }
+        return result;
+    }
+
+    // Writes the version's content to the target, replacing it. The caller stores the current file first if needed
+    public void restore(TrashVersion version, Path target) throws IOException {
+        Files.createDirectories(storeDir);
+        Path tempFile = Files.createTempFile(storeDir, "restore-", ".tmp");
+
+        try {
+            synchronized (maintenanceLock) {
+                synchronized (this) {
+                    if (!versions.contains(version)) {
+                        throw new IOException("version #" + version.id() + " is no longer kept");
+                    }
+                }
+
+                try (InputStream in = openBlob(version.sha256())) {
+                    Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+
+            Files.createDirectories(target.getParent());
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    // Compresses new blobs, then drops versions past the age limit and the oldest ones until the store fits its size limit
+    public void maintain() {
+        synchronized (maintenanceLock) {
+            try {
+                compressBlobs();
+                prune();
+            } catch (IOException e) {
+                logger.warning("Error maintaining trash store " + storeDir + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void compressBlobs() throws IOException {
+        for (Path rawBlob : listBlobs()) {
+            if (rawBlob.getFileName().toString().endsWith(".gz")) {
+                continue;
+            }
+
+            Path compressedBlob = rawBlob.resolveSibling(rawBlob.getFileName() + ".gz");
+            Path tempFile = rawBlob.resolveSibling(rawBlob.getFileName() + ".gz.tmp");
+            byte[] buffer = BufferPool.acquire();
+
+            try (InputStream in = Files.newInputStream(rawBlob);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(tempFile), BufferPool.BUFFER_SIZE)) {
+                int length;
+                while ((length = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, length);
+                }
+            } catch (NoSuchFileException e) {
+                // Pruned or already compressed meanwhile
+                Files.deleteIfExists(tempFile);
+                continue;
+            } finally {
+                BufferPool.release(buffer);
+            }
+
+            Files.move(tempFile, compressedBlob, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(rawBlob);
+        }
+    }
+
+    private synchronized void prune() throws IOException {
+        int versionCount = versions.size();
+        long cutoff = System.currentTimeMillis() - maxAgeMillis;
+        versions.removeIf(version -> version.timestamp() < cutoff);
+
+        // Disk usage per blob, counted once however many versions share it
+        Map<String, Long> blobSizes = new HashMap<>();
+        long totalBytes = 0;
+        for (Path blob : listBlobs()) {
+            String name = blob.getFileName().toString();
+            String sha256 = name.endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+            long size = Files.size(blob);
+            blobSizes.merge(sha256, size, Long::sum);
+            totalBytes += size;
+        }
+
+        Map<String, Integer> references = new HashMap<>();
+        for (TrashVersion version : versions) {
+            references.merge(version.sha256(), 1, Integer::sum);
+        }
+
+        // Unreferenced blobs don't count, they are deleted below
+        for (Map.Entry<String, Long> blob : blobSizes.entrySet()) {
+            if (!references.containsKey(blob.getKey())) {
+                totalBytes -= blob.getValue();
+            }
+        }
+
+        Iterator<TrashVersion> oldestFirst = versions.iterator();
+        while (totalBytes > maxBytes && oldestFirst.hasNext()) {
+            TrashVersion version = oldestFirst.next();
+            oldestFirst.remove();
+
+            if (references.merge(version.sha256(), -1, Integer::sum) == 0) {
+                references.remove(version.sha256());
+                totalBytes -= blobSizes.getOrDefault(version.sha256(), 0L);
+            }
+        }
+
+        for (String sha256 : blobSizes.keySet()) {
+            if (!references.containsKey(sha256)) {
+                Files.deleteIfExists(blobPath(sha256, false));
+                Files.deleteIfExists(blobPath(sha256, true));
+            }
+        }
+
+        if (versions.size() != versionCount) {
+            rewriteLog();
+            logger.info("Pruned " + (versionCount - versions.size()) + " old version(s) from trash store " + storeDir);
+        }
+    }
+
+    private InputStream openBlob(String sha256) throws IOException {
+        Path compressedBlob = blobPath(sha256, true);
+
+        if (!Files.exists(compressedBlob)) {
+            try {
+                return new BufferedInputStream(Files.newInputStream(blobPath(sha256, false)), BufferPool.BUFFER_SIZE);
+            } catch (NoSuchFileException e) {
+                // Compressed between the two checks
+            }
+        }
+
+        return new GZIPInputStream(Files.newInputStream(compressedBlob), BufferPool.BUFFER_SIZE);
+    }
+
+    private List<Path> listBlobs() throws IOException {
+        if (!Files.isDirectory(blobDir)) {
+            return List.of();
+        }
+
+        try (Stream<Path> blobs = Files.walk(blobDir, 2)) {
+            return blobs.filter(Files::isRegularFile)
+                    .filter(path -> !path.getFileName().toString().endsWith(".tmp"))
+                    .toList();
+        }
+    }
+
+    private Path blobPath(String sha256, boolean compressed) {
+        return blobDir.resolve(sha256.substring(0, 2)).resolve(compressed ? sha256 + ".gz" : sha256);
+    }
+
+    private void appendToLog(TrashVersion version) throws IOException {
+        Files.createDirectories(storeDir);
+        try (BufferedWriter writer = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writeVersion(writer, version);
+        }
+    }
+
+    private void rewriteLog() throws IOException {
+        Path tempFile = logFile.resolveSibling(logFile.getFileName() + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            for (TrashVersion version : versions) {
+                writeVersion(writer, version);
+            }
+        }
+
+        Files.move(tempFile, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeVersion(BufferedWriter writer, TrashVersion version) throws IOException {
+        writer.write(version.id() + "\t" + version.timestamp() + "\t" + version.sha256() + "\t" + version.size() + "\t" + version.reason() + "\t" + version.relativePath());
+        writer.newLine();
+    }
+}
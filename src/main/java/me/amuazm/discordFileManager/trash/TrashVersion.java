@@ -0,0 +1,5 @@
+package me.amuazm.discordFileManager.trash;
+
+// One kept version of a file: what it was called, when and why it left its directory, and which blob holds it
+public record TrashVersion(int id, long timestamp, String sha256, long size, String reason, String relativePath) {
+}
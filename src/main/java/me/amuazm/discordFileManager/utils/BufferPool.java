@@ -0,0 +1,23 @@
+package me.amuazm.discordFileManager.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Small pool of large I/O buffers shared by zip and upload paths so each transfer doesn't allocate its own
+public class BufferPool {
+    public static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 16;
+
+    private static final BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+
+    public static byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    public static void release(byte[] buffer) {
+        if (buffer != null && buffer.length == BUFFER_SIZE) {
+            buffers.offer(buffer);
+        }
+    }
+}
@@ -1,47 +1,132 @@
 package me.amuazm.discordFileManager.utils;
 
+import me.amuazm.discordFileManager.archive.CompressionSettings;
+import me.amuazm.discordFileManager.discord.HelpCommand;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 public class ConfigManager {
     private final JavaPlugin plugin;
+    private volatile ConfigSnapshot snapshot;
 
     public ConfigManager(JavaPlugin plugin) {
         this.plugin = plugin;
 
         plugin.saveDefaultConfig();
+        this.snapshot = loadSnapshot();
     }
 
     public void reloadConfig() {
         plugin.reloadConfig();
+
+        // Build the new snapshot completely before swapping it in, so readers never see a half-loaded config
+        this.snapshot = loadSnapshot();
+    }
+
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
     }
 
     public String getBotToken() {
-        return plugin.getConfig().getString("bot-token");
+        return snapshot.botToken();
+    }
+
+    public int getSearchResultLimit() {
+        return snapshot.searchResultLimit();
+    }
+
+    public long getUploadLimitBytes() {
+        return snapshot.uploadLimitBytes();
+    }
+
+    public int getUploadParallelism() {
+        return snapshot.uploadParallelism();
+    }
+
+    public int getZipThreads() {
+        return snapshot.zipThreads();
+    }
+
+    public int getCommandThreads() {
+        return snapshot.commandThreads();
     }
 
-    public String getGuildId() {
-        return plugin.getConfig().getString("guild-id");
+    public int getCommandQueueLimit() {
+        return snapshot.commandQueueLimit();
     }
 
-    public String getChannelId() {
-        return plugin.getConfig().getString("channel-id");
+    public int getCommandsPerUser() {
+        return snapshot.commandsPerUser();
     }
 
-    public List<String> getAllowedUserIds() {
-        return plugin.getConfig().getStringList("allowed-user-ids");
+    public int getMetricsPort() {
+        return snapshot.metricsPort();
     }
 
     public Map<String, FileManagerConfig> getFileManagers() {
-        Map<String, FileManagerConfig> fileManagers = new HashMap<>();
+        return snapshot.fileManagers();
+    }
+
+    private ConfigSnapshot loadSnapshot() {
+        FileConfiguration config = plugin.getConfig();
+
+        long[] allowedUserIds = config.getStringList("allowed-user-ids").stream()
+                .filter(id -> id != null && !id.isEmpty())
+                .mapToLong(id -> parseId("allowed-user-ids", id))
+                .filter(id -> id != 0)
+                .sorted()
+                .distinct()
+                .toArray();
+
+        int zipThreads = config.getInt("zip-threads", 0);
+        Map<String, FileManagerConfig> fileManagers = loadFileManagers();
+
+        return new ConfigSnapshot(
+                config.getString("bot-token"),
+                parseId("guild-id", config.getString("guild-id")),
+                parseId("channel-id", config.getString("channel-id")),
+                allowedUserIds,
+                fileManagers,
+                HelpCommand.renderHelpText(fileManagers),
+                Math.max(1, config.getInt("search-result-limit", 200)),
+                Math.max(1, config.getLong("search-cache-ttl-minutes", 30)) * 60 * 1000,
+                (long) (Math.max(0.1, config.getDouble("search-cache-max-mb", 16.0)) * 1024 * 1024),
+                (long) (Math.max(1.0, config.getDouble("upload-limit-mb", 8.0)) * 1024 * 1024),
+                Math.max(1, config.getInt("upload-parallelism", 4)),
+                (long) (Math.max(1.0, config.getDouble("extract-max-mb", 256.0)) * 1024 * 1024),
+                Math.max(1, config.getInt("extract-max-files", 1000)),
+                (long) (Math.max(1.0, config.getDouble("trash-max-mb", 1024.0)) * 1024 * 1024),
+                Math.max(1, config.getLong("trash-max-age-days", 30)) * 24 * 60 * 60 * 1000,
+                zipThreads > 0 ? zipThreads : Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+                Math.max(1, config.getInt("command-threads", 4)),
+                Math.max(0, config.getInt("command-queue-limit", 32)),
+                Math.max(1, config.getInt("commands-per-user", 2)),
+                Math.clamp(config.getInt("metrics-port", 0), 0, 65535)
+        );
+    }
+
+    private long parseId(String key, String value) {
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            plugin.getLogger().warning("Invalid Discord ID '" + value + "' for " + key + " in config.yml!");
+            return 0;
+        }
+    }
+
+    private Map<String, FileManagerConfig> loadFileManagers() {
+        Map<String, FileManagerConfig> fileManagers = new LinkedHashMap<>();
 
         ConfigurationSection fileManagersSection = plugin.getConfig().getConfigurationSection("file-managers");
         if (fileManagersSection == null) {
-            return fileManagers;
+            return Collections.unmodifiableMap(fileManagers);
         }
 
         for (String commandPrefix : fileManagersSection.getKeys(false)) {
@@ -54,15 +139,21 @@ public class ConfigManager {
             String itemCategory = managerSection.getString("item-category");
             boolean allowNestedDirs = managerSection.getBoolean("allow-nested-dirs", false);
             String emoji = managerSection.getString("emoji", "📁");
+            int compressionLevel = Math.clamp(managerSection.getInt("compression-level", 6), 0, 9);
+            Set<String> storeExtensions = new HashSet<>();
+            for (String extension : managerSection.getStringList("store-extensions")) {
+                storeExtensions.add(extension.toLowerCase(Locale.ROOT).replaceFirst("^\\.", ""));
+            }
+            CompressionSettings compression = new CompressionSettings(compressionLevel, Set.copyOf(storeExtensions));
 
             if (dirFromPluginFolder != null && itemCategory != null) {
-                fileManagers.put(commandPrefix, new FileManagerConfig(dirFromPluginFolder, itemCategory, allowNestedDirs, emoji));
+                fileManagers.put(commandPrefix, new FileManagerConfig(dirFromPluginFolder, itemCategory, allowNestedDirs, emoji, compression));
             } else {
                 plugin.getLogger().warning("Invalid file manager configuration for prefix '" + commandPrefix + "': missing dir-from-plugin-folder or item-category");
             }
         }
 
-        return fileManagers;
+        return Collections.unmodifiableMap(fileManagers);
     }
 
     public boolean validateConfig() {
@@ -73,17 +164,17 @@ public class ConfigManager {
             configValid = false;
         }
 
-        if (getGuildId() == null || getGuildId().isEmpty()) {
+        if (snapshot.guildId() == 0) {
             plugin.getLogger().warning("Guild ID is not set in config.yml!");
             configValid = false;
         }
 
-        if (getChannelId() == null || getChannelId().isEmpty()) {
+        if (snapshot.channelId() == 0) {
             plugin.getLogger().warning("Channel ID is not set in config.yml!");
             configValid = false;
         }
 
-        if (getAllowedUserIds().isEmpty() || getAllowedUserIds().stream().allMatch(String::isEmpty)) {
+        if (snapshot.allowedUserIds().length == 0) {
             plugin.getLogger().warning("No allowed user IDs found in config.yml!");
             configValid = false;
         }
@@ -102,12 +193,14 @@ public class ConfigManager {
         private final String itemCategory;
         private final boolean allowNestedDirs;
         private final String emoji;
+        private final CompressionSettings compression;
 
-        public FileManagerConfig(String dirFromPluginFolder, String itemCategory, boolean allowNestedDirs, String emoji) {
+        public FileManagerConfig(String dirFromPluginFolder, String itemCategory, boolean allowNestedDirs, String emoji, CompressionSettings compression) {
             this.dirFromPluginFolder = dirFromPluginFolder;
             this.itemCategory = itemCategory;
             this.allowNestedDirs = allowNestedDirs;
             this.emoji = emoji;
+            this.compression = compression;
         }
 
         public String getDirFromPluginFolder() {
@@ -125,5 +218,9 @@ public class ConfigManager {
         public String getEmoji() {
             return emoji;
         }
+
+        public CompressionSettings getCompression() {
+            return compression;
+        }
     }
 }
\ No newline at end of file
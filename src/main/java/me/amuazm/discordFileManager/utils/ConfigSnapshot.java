@@ -0,0 +1,33 @@
+package me.amuazm.discordFileManager.utils;
+
+import java.util.Arrays;
+import java.util.Map;
+
+// Immutable view of config.yml, parsed once per load and swapped atomically on reload.
+// Discord IDs are kept as primitives and allowedUserIds is sorted so per-message checks don't allocate.
+public record ConfigSnapshot(
+        String botToken,
+        long guildId,
+        long channelId,
+        long[] allowedUserIds,
+        Map<String, ConfigManager.FileManagerConfig> fileManagers,
+        String helpText,
+        int searchResultLimit,
+        long searchCacheTtlMillis,
+        long searchCacheMaxBytes,
+        long uploadLimitBytes,
+        int uploadParallelism,
+        long extractMaxBytes,
+        int extractMaxFiles,
+        long trashMaxBytes,
+        long trashMaxAgeMillis,
+        int zipThreads,
+        int commandThreads,
+        int commandQueueLimit,
+        int commandsPerUser,
+        int metricsPort
+) {
+    public boolean isAllowedUser(long userId) {
+        return Arrays.binarySearch(allowedUserIds, userId) >= 0;
+    }
+}
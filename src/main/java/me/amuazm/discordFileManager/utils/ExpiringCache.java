@@ -0,0 +1,123 @@
+package me.amuazm.discordFileManager.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+// Thread-safe LRU cache whose entries expire after a fixed time to live, bounded by the total estimated
+// size of its values rather than the entry count
+public class ExpiringCache<V> {
+    private final long ttlMillis;
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalWeight = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long expirations = 0;
+
+    public ExpiringCache(long ttlMillis, long maxWeight, ToLongFunction<V> weigher) {
+        this.ttlMillis = ttlMillis;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    public synchronized V get(String key) {
+        Entry<V> entry = entries.get(key);
+
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            remove(key, entry);
+            expirations++;
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return entry.value;
+    }
+
+    // False if the value is too big to cache at all, callers shouldn't hand out its key then
+    public synchronized boolean put(String key, V value) {
+        long weight = weigher.applyAsLong(value);
+
+        // A value bigger than the whole cache would only evict everything else and then itself
+        if (weight > maxWeight) {
+            return false;
+        }
+
+        Entry<V> previous = entries.put(key, new Entry<>(value, weight, System.currentTimeMillis() + ttlMillis));
+        if (previous != null) {
+            totalWeight -= previous.weight;
+        }
+        totalWeight += weight;
+
+        evict();
+        return true;
+    }
+
+    // Takes the value out of the cache, so it can be used at most once
+    public synchronized V remove(String key) {
+        Entry<V> entry = entries.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+
+        remove(key, entry);
+
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            expirations++;
+            return null;
+        }
+
+        return entry.value;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(entries.size(), totalWeight, hits, misses, evictions, expirations);
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Entry<V>>> iterator = entries.entrySet().iterator();
+
+        // Least recently used entries come first; drop expired ones and then as many as needed to fit the bound
+        while (iterator.hasNext()) {
+            Entry<V> entry = iterator.next().getValue();
+
+            if (entry.expiresAt <= now) {
+                expirations++;
+            } else if (totalWeight > maxWeight) {
+                evictions++;
+            } else {
+                continue;
+            }
+
+            iterator.remove();
+            totalWeight -= entry.weight;
+        }
+    }
+
+    private void remove(String key, Entry<V> entry) {
+        entries.remove(key);
+        totalWeight -= entry.weight;
+    }
+
+    private record Entry<V>(V value, long weight, long expiresAt) {
+    }
+
+    public record Stats(int size, long weight, long hits, long misses, long evictions, long expirations) {
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+}
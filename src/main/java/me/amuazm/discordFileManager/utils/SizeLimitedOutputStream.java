@@ -0,0 +1,50 @@
+package me.amuazm.discordFileManager.utils;
+
+import lombok.Getter;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Counts bytes written and fails as soon as the running total passes the limit
+public class SizeLimitedOutputStream extends FilterOutputStream {
+    @Getter
+    private final long limit;
+    @Getter
+    private long bytesWritten = 0;
+
+    public SizeLimitedOutputStream(OutputStream out, long limit) {
+        super(out);
+        this.limit = limit;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkLimit(1);
+        out.write(b);
+        bytesWritten++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkLimit(len);
+        out.write(b, off, len);
+        bytesWritten += len;
+    }
+
+    private void checkLimit(int len) throws SizeLimitExceededException {
+        if (bytesWritten + len > limit) {
+            throw new SizeLimitExceededException(limit);
+        }
+    }
+
+    public static class SizeLimitExceededException extends IOException {
+        @Getter
+        private final long limit;
+
+        public SizeLimitExceededException(long limit) {
+            super("Output exceeded the limit of " + limit + " bytes");
+            this.limit = limit;
+        }
+    }
+}
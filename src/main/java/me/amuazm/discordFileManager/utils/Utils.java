@@ -2,87 +2,116 @@ package me.amuazm.discordFileManager.utils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class Utils {
-    public static String[] splitIntoChunks(String text, int maxChunkSize) {
-        List<String> chunks = new ArrayList<>();
-        String[] lines = text.split("\n");
-
-        StringBuilder currentChunk = new StringBuilder();
-
-        for (String line : lines) {
-            // Check if adding this line would exceed the limit
-            // +1 for the newline character we'll add
-            if (currentChunk.length() + line.length() + 1 > maxChunkSize) {
-                // If current chunk has content, save it and start a new one
-                if (!currentChunk.isEmpty()) {
-                    chunks.add(currentChunk.toString());
-                    currentChunk = new StringBuilder();
-                }
+    private static final String[] SIZE_UNITS = {"B", "KB", "MB", "GB", "TB"};
 
-                // Handle case where a single line is longer than maxChunkSize
-                if (line.length() > maxChunkSize) {
-                    // Split the long line at word boundaries if possible
-                    chunks.addAll(splitLongLine(line, maxChunkSize));
-                } else {
-                    currentChunk.append(line);
-                }
-            } else {
-                // Add newline if this isn't the first line in the chunk
-                if (!currentChunk.isEmpty()) {
-                    currentChunk.append("\n");
-                }
-                currentChunk.append(line);
-            }
+    // Short human-readable size for listings, e.g. "512 B", "14.2 KB", "3.05 MB"
+    public static String formatFileSize(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
         }
 
-        // Add the last chunk if it has content
-        if (!currentChunk.isEmpty()) {
-            chunks.add(currentChunk.toString());
+        double size = bytes;
+        int unit = 0;
+        while (size >= 1024 && unit < SIZE_UNITS.length - 1) {
+            size /= 1024;
+            unit++;
         }
 
-        return chunks.toArray(new String[0]);
+        return String.format(size < 10 ? "%.2f %s" : size < 100 ? "%.1f %s" : "%.0f %s", size, SIZE_UNITS[unit]);
     }
 
-    private static List<String> splitLongLine(String line, int maxChunkSize) {
+    public static String[] splitIntoChunks(CharSequence text, int maxChunkSize) {
         List<String> chunks = new ArrayList<>();
+        forEachChunk(text, maxChunkSize, chunks::add);
+        return chunks.toArray(new String[0]);
+    }
+
+    // Splits the text in a single pass over index ranges, only copying each chunk once when it is handed out.
+    // Chunks end at a line break if possible, then at a space, and never inside a `code span` or a surrogate pair
+    // unless a single span is longer than a whole chunk. The line break or space a chunk ends at is dropped.
+    public static void forEachChunk(CharSequence text, int maxChunkSize, Consumer<String> consumer) {
+        int length = text.length();
+        int start = skipLineBreaks(text, 0);
 
-        // Try to split at word boundaries first
-        String[] words = line.split(" ");
-        StringBuilder currentChunk = new StringBuilder();
-
-        for (String word : words) {
-            // Check if adding this word would exceed the limit
-            // +1 for the space we'll add
-            if (currentChunk.length() + word.length() + 1 > maxChunkSize) {
-                // If current chunk has content, save it
-                if (!currentChunk.isEmpty()) {
-                    chunks.add(currentChunk.toString());
-                    currentChunk = new StringBuilder();
+        while (start < length) {
+            if (length - start <= maxChunkSize) {
+                int end = length;
+                while (end > start && text.charAt(end - 1) == '\n') {
+                    end--;
                 }
+                consumer.accept(text.subSequence(start, end).toString());
+                return;
+            }
 
-                // If even a single word is too long, we have to split it
-                if (word.length() > maxChunkSize) {
-                    for (int i = 0; i < word.length(); i += maxChunkSize) {
-                        chunks.add(word.substring(i, Math.min(i + maxChunkSize, word.length())));
-                    }
-                } else {
-                    currentChunk.append(word);
+            int cut = findCut(text, start, start + maxChunkSize);
+            consumer.accept(text.subSequence(start, cut).toString());
+
+            char separator = text.charAt(cut);
+            start = separator == ' ' ? cut + 1 : skipLineBreaks(text, cut);
+        }
+    }
+
+    // Best end for a chunk starting at start that may not go past limit; the character at limit exists
+    private static int findCut(CharSequence text, int start, int limit) {
+        int lastLineBreak = -1;
+        int lastSpace = -1;
+        int codeStart = -1;
+        int codeTicks = 0;
+
+        for (int i = start; i <= limit; i++) {
+            char c = text.charAt(i);
+
+            if (c == '\n') {
+                // Code spans don't continue past the end of a line
+                codeStart = -1;
+                if (i > start) {
+                    lastLineBreak = i;
                 }
-            } else {
-                // Add space if this isn't the first word in the chunk
-                if (!currentChunk.isEmpty()) {
-                    currentChunk.append(" ");
+            } else if (c == ' ') {
+                if (codeStart < 0 && i > start) {
+                    lastSpace = i;
+                }
+            } else if (c == '`' && i < limit) {
+                // A span is opened and closed by runs of the same number of backticks
+                int ticks = 1;
+                while (i + ticks < limit && text.charAt(i + ticks) == '`') {
+                    ticks++;
+                }
+
+                if (codeStart < 0) {
+                    codeStart = i;
+                    codeTicks = ticks;
+                } else if (ticks == codeTicks) {
+                    codeStart = -1;
                 }
-                currentChunk.append(word);
+                i += ticks - 1;
             }
         }
 
-        // Add the last chunk if it has content
-        if (!currentChunk.isEmpty()) {
-            chunks.add(currentChunk.toString());
+        if (lastLineBreak > 0) {
+            return lastLineBreak;
         }
+        if (lastSpace > 0) {
+            return lastSpace;
+        }
+        if (codeStart > start) {
+            return codeStart;
+        }
+
+        // No clean boundary at all, cut hard but keep surrogate pairs (most emoji) together
+        if (Character.isHighSurrogate(text.charAt(limit - 1)) && Character.isLowSurrogate(text.charAt(limit))) {
+            return limit - 1;
+        }
+        return limit;
+    }
 
-        return chunks;
+    private static int skipLineBreaks(CharSequence text, int index) {
+        while (index < text.length() && text.charAt(index) == '\n') {
+            index++;
+        }
+        return index;
     }
 }